@@ -0,0 +1,11 @@
+package org.bambi.overwatch.xposed;
+
+import de.robv.android.xposed.callbacks.XC_LoadPackage;
+
+/**
+ * Hooks of one target package, see {@link HookBundleRegistry}. Implementations need a public no-argument
+ * constructor and are only loaded in their target process.
+ */
+public interface HookBundle {
+  void handleLoadPackage(XC_LoadPackage.LoadPackageParam lpParam, String modulePath);
+}
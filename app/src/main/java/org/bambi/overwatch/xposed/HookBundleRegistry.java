@@ -0,0 +1,144 @@
+package org.bambi.overwatch.xposed;
+
+import static org.bambi.overwatch.xposed.util.XposedUtils.log;
+import static org.bambi.overwatch.xposed.util.XposedUtils.logException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps package and process names to {@link HookBundle}s. {@code handleLoadPackage} runs in every app process, so
+ * the names are kept in a precomputed open addressing table: a process without hooks pays one probe sequence and
+ * allocates nothing. Bundles are registered by class name and instantiated on first use, bundle classes are never
+ * loaded outside of their target process.
+ */
+public final class HookBundleRegistry {
+
+  public static final class Builder {
+    private final List<String> names = new ArrayList<>();
+    private final List<String> bundleClassNames = new ArrayList<>();
+    private final List<String> processNames = new ArrayList<>();
+    private final List<String> processBundleClassNames = new ArrayList<>();
+
+    public Builder addPackage(String packageName, String bundleClassName) {
+      names.add(packageName);
+      bundleClassNames.add(bundleClassName);
+      return this;
+    }
+
+    /**
+     * Registers a bundle for one process of a package only, takes precedence over the bundle of its package.
+     */
+    public Builder addProcess(String processName, String bundleClassName) {
+      processNames.add(processName);
+      processBundleClassNames.add(bundleClassName);
+      return this;
+    }
+
+    public HookBundleRegistry build() {
+      return new HookBundleRegistry(
+          new Table(names, bundleClassNames),
+          processNames.isEmpty() ? null : new Table(processNames, processBundleClassNames));
+    }
+  }
+
+
+  private static final class Table {
+    final String[] keys;
+    final String[] bundleClassNames;
+    final HookBundle[] bundles;
+    final int mask;
+
+    Table(List<String> names, List<String> bundleClassNames) {
+      int capacity = Integer.highestOneBit(Math.max(names.size(), 1) * 4 - 1) << 1;
+
+      this.keys = new String[capacity];
+      this.bundleClassNames = new String[capacity];
+      this.bundles = new HookBundle[capacity];
+      this.mask = capacity - 1;
+
+      for(int i = 0; i < names.size(); i++) {
+        String name = names.get(i);
+        int slot = indexOf(name);
+
+        if(slot >= 0) {
+          throw new IllegalArgumentException("Duplicate hook bundle for " + name);
+        }
+
+        slot = -slot - 1;
+        keys[slot] = name;
+        this.bundleClassNames[slot] = bundleClassNames.get(i);
+      }
+    }
+
+    /**
+     * Returns the slot of the name, or {@code -(free slot) - 1} when it is not in the table.
+     */
+    int indexOf(String name) {
+      int hash = name.hashCode();
+      int slot = (hash ^ (hash >>> 16)) & mask;
+
+      while(true) {
+        String key = keys[slot];
+
+        if(key == null) {
+          return -slot - 1;
+        }
+
+        if(key.equals(name)) {
+          return slot;
+        }
+
+        slot = (slot + 1) & mask;
+      }
+    }
+  }
+
+
+  private final Table packageTable;
+  private final Table processTable;
+
+
+  private HookBundleRegistry(Table packageTable, Table processTable) {
+    this.packageTable = packageTable;
+    this.processTable = processTable;
+  }
+
+
+  /**
+   * Returns the bundle of the process, {@code null} when there is none or it could not be created.
+   */
+  public HookBundle find(String packageName, String processName) {
+    if(processTable != null && processName != null) {
+      int slot = processTable.indexOf(processName);
+
+      if(slot >= 0) {
+        return getBundle(processTable, slot);
+      }
+    }
+
+    int slot = packageTable.indexOf(packageName);
+
+    return slot >= 0 ? getBundle(packageTable, slot) : null;
+  }
+
+
+  private static synchronized HookBundle getBundle(Table table, int slot) {
+    HookBundle bundle = table.bundles[slot];
+
+    if(bundle == null) {
+      try {
+        bundle = (HookBundle)Class.forName(table.bundleClassNames[slot], true, HookBundleRegistry.class.getClassLoader())
+            .getDeclaredConstructor().newInstance();
+        table.bundles[slot] = bundle;
+      }
+      catch(ReflectiveOperationException | ClassCastException exception) {
+        log("Failed to create hook bundle %s", table.bundleClassNames[slot]);
+        logException(exception);
+      }
+    }
+
+    return bundle;
+  }
+
+}
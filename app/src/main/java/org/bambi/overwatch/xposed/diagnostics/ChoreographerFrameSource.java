@@ -0,0 +1,35 @@
+package org.bambi.overwatch.xposed.diagnostics;
+
+import android.view.Choreographer;
+
+/**
+ * {@link FrameSource} of the calling looper thread, has to be created and used on that thread.
+ */
+public class ChoreographerFrameSource implements FrameSource, Choreographer.FrameCallback {
+
+  private final Choreographer choreographer = Choreographer.getInstance();
+
+  private FrameListener frameListener;
+
+
+  @Override
+  public void postFrameCallback(FrameListener frameListener) {
+    if(this.frameListener == null) {
+      choreographer.postFrameCallback(this);
+    }
+
+    this.frameListener = frameListener;
+  }
+
+
+  @Override
+  public void doFrame(long frameTimeNanos) {
+    FrameListener frameListener = this.frameListener;
+    this.frameListener = null;
+
+    if(frameListener != null) {
+      frameListener.onFrame(frameTimeNanos);
+    }
+  }
+
+}
@@ -0,0 +1,227 @@
+package org.bambi.overwatch.xposed.diagnostics;
+
+import static org.bambi.overwatch.xposed.util.XposedUtils.log;
+import static org.bambi.overwatch.xposed.util.XposedUtils.logException;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+import android.os.Process;
+import android.view.View;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.bambi.overwatch.xposed.util.HookFailures;
+import org.bambi.overwatch.xposed.util.HookStatistics;
+import org.bambi.overwatch.xposed.util.HookTracing;
+import org.bambi.overwatch.xposed.util.OverwatchLog;
+import org.bambi.overwatch.xposed.util.RetainedObjects;
+
+/**
+ * Dumps the module's diagnostics of the hooked process to logcat and to {@code cache/overwatch/diagnostics.txt} of
+ * the hooked package on demand:
+ *
+ * <pre>
+ * adb shell am broadcast -a org.bambi.overwatch.xposed.DUMP_DIAGNOSTICS [--ez reset true] [--ez view_tree true]
+ *     [--ez trace true] [--ez statistics true|false] [--ez recorder true|false] [--ez system_trace true|false]
+ *     [--ez gc true]
+ * </pre>
+ *
+ * Only senders holding {@code android.permission.DUMP} reach the receiver, the shell does, apps do not.
+ *
+ * With {@code view_tree} a {@link ViewTreeSnapshot} of the window of the view set by {@link #setViewTreeRoot} is
+ * written next to the report, see {@link ViewTreeSnapshotter}. With {@code trace} the hook sections recorded by
+ * {@link HookTracing} are written to {@code trace.json} for Perfetto, {@code system_trace} switches the hook sections
+ * of the system trace on or off. {@code statistics} and {@code recorder} switch the {@link HookStatistics} and the
+ * trace recorder, both are off until switched on. With {@code gc} the heap is collected first, so the {@link RetainedObjects} still
+ * alive are the leaked ones.
+ */
+public class DiagnosticsReceiver extends BroadcastReceiver {
+
+  /**
+   * Contributor of a section of the report, called on the main thread.
+   */
+  public interface ReportSource {
+    void appendReport(List<String> report);
+  }
+
+
+  public static final String ACTION_DUMP_DIAGNOSTICS = "org.bambi.overwatch.xposed.DUMP_DIAGNOSTICS";
+  public static final String EXTRA_RESET = "reset";
+  public static final String EXTRA_VIEW_TREE = "view_tree";
+  public static final String EXTRA_TRACE = "trace";
+  public static final String EXTRA_SYSTEM_TRACE = "system_trace";
+  public static final String EXTRA_STATISTICS = "statistics";
+  public static final String EXTRA_RECORDER = "recorder";
+  public static final String EXTRA_GC = "gc";
+
+  // held by the shell, keeps other apps from triggering a gc, file writes or the switches
+  private static final String SENDER_PERMISSION = "android.permission.DUMP";
+
+  private static final String DIAGNOSTICS_DIRECTORY = "overwatch";
+  private static final String DIAGNOSTICS_FILE_NAME = "diagnostics.txt";
+  private static final String TRACE_FILE_NAME = "trace.json";
+
+  private static DiagnosticsReceiver registeredReceiver;
+
+  private static final List<ReportSource> reportSources = new CopyOnWriteArrayList<>();
+
+  private static volatile WeakReference<View> viewTreeRoot;
+  private static final ViewTreeSnapshotter viewTreeSnapshotter =
+      new ViewTreeSnapshotter(ViewTreeSnapshot.DEFAULT_MAX_DEPTH, ViewTreeSnapshot.DEFAULT_MAX_NODES);
+
+
+  /**
+   * Registers the receiver in the hooked process once, further calls do nothing.
+   */
+  public static synchronized void register(Context context) {
+    if(registeredReceiver == null) {
+      registeredReceiver = new DiagnosticsReceiver();
+      context.getApplicationContext().registerReceiver(
+          registeredReceiver, new IntentFilter(ACTION_DUMP_DIAGNOSTICS), SENDER_PERMISSION, (Handler)null);
+    }
+  }
+
+
+  public static void addReportSource(ReportSource reportSource) {
+    reportSources.add(reportSource);
+  }
+
+
+  /**
+   * Sets a view of the window whose hierarchy is snapshot on request, only a weak reference is kept.
+   */
+  public static void setViewTreeRoot(View view) {
+    viewTreeRoot = new WeakReference<>(view);
+  }
+
+
+  public static List<String> collectReport() {
+    List<String> report = new ArrayList<>();
+
+    report.add("Hook statistics:");
+    report.addAll(HookStatistics.getReport());
+
+    report.add("Hook failures:");
+    report.addAll(HookFailures.getReport());
+
+    report.add(String.format("Log records dropped: %d", OverwatchLog.getDroppedRecords()));
+
+    report.add("Retained objects:");
+    report.addAll(RetainedObjects.getReport());
+
+    for(ReportSource reportSource : reportSources) {
+      reportSource.appendReport(report);
+    }
+
+    return report;
+  }
+
+
+  @Override
+  public void onReceive(Context context, Intent intent) {
+    if(intent.getBooleanExtra(EXTRA_GC, false)) {
+      System.gc();
+      System.runFinalization();
+      System.gc();
+    }
+
+    final List<String> report = collectReport();
+    final File diagnosticsFile = new File(new File(context.getCacheDir(), DIAGNOSTICS_DIRECTORY), DIAGNOSTICS_FILE_NAME);
+
+    final boolean writeTrace = intent.getBooleanExtra(EXTRA_TRACE, false);
+
+    if(intent.getBooleanExtra(EXTRA_RESET, false)) {
+      HookStatistics.reset();
+    }
+
+    if(intent.hasExtra(EXTRA_SYSTEM_TRACE)) {
+      HookTracing.setSystemTraceEnabled(intent.getBooleanExtra(EXTRA_SYSTEM_TRACE, false));
+      log("Hook sections in system trace %s", HookTracing.isSystemTraceEnabled() ? "enabled" : "disabled");
+    }
+
+    if(intent.hasExtra(EXTRA_STATISTICS)) {
+      HookStatistics.setEnabled(intent.getBooleanExtra(EXTRA_STATISTICS, false));
+      log("Hook statistics %s", HookStatistics.isEnabled() ? "enabled" : "disabled");
+    }
+
+    if(intent.hasExtra(EXTRA_RECORDER)) {
+      HookTracing.setRecorderEnabled(intent.getBooleanExtra(EXTRA_RECORDER, false));
+      log("Hook trace recorder %s", HookTracing.isRecorderEnabled() ? "enabled" : "disabled");
+    }
+
+    if(intent.getBooleanExtra(EXTRA_VIEW_TREE, false)) {
+      WeakReference<View> viewReference = viewTreeRoot;
+      View view = viewReference != null ? viewReference.get() : null;
+
+      if(view != null) {
+        viewTreeSnapshotter.snapshotAsync(view.getRootView(), diagnosticsFile.getParentFile());
+      }
+      else {
+        log("No view to snapshot");
+      }
+    }
+
+    Thread dumpThread = new Thread("Overwatch-Diagnostics") {
+      @Override
+      public void run() {
+        for(String line : report) {
+          log("%s", line);
+        }
+
+        try {
+          writeReport(diagnosticsFile, report);
+          log("Diagnostics written to %s", diagnosticsFile);
+        }
+        catch(IOException exception) {
+          log("Failed to write diagnostics to %s", diagnosticsFile);
+          logException(exception);
+        }
+
+        if(writeTrace) {
+          File traceFile = new File(diagnosticsFile.getParentFile(), TRACE_FILE_NAME);
+
+          try(Writer writer = new OutputStreamWriter(new FileOutputStream(traceFile), StandardCharsets.UTF_8)) {
+            HookTracing.getRecorder().writeChromeTrace(writer, Process.myPid());
+            log("Trace written to %s", traceFile);
+          }
+          catch(IOException exception) {
+            log("Failed to write trace to %s", traceFile);
+            logException(exception);
+          }
+        }
+      }
+    };
+
+    dumpThread.setDaemon(true);
+    dumpThread.start();
+  }
+
+
+  private static void writeReport(File diagnosticsFile, List<String> report) throws IOException {
+    File diagnosticsDirectory = diagnosticsFile.getParentFile();
+
+    if(!diagnosticsDirectory.isDirectory() && !diagnosticsDirectory.mkdirs()) {
+      throw new IOException("Cannot create directory " + diagnosticsDirectory);
+    }
+
+    try(Writer writer = new OutputStreamWriter(new FileOutputStream(diagnosticsFile), StandardCharsets.UTF_8)) {
+      for(String line : report) {
+        writer.write(line);
+        writer.write('\n');
+      }
+    }
+  }
+
+}
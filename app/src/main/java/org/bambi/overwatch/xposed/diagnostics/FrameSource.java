@@ -0,0 +1,21 @@
+package org.bambi.overwatch.xposed.diagnostics;
+
+/**
+ * Source of display frame timestamps, abstracted from {@code Choreographer} so frame aggregation can run on the JVM.
+ */
+public interface FrameSource {
+
+  interface FrameListener {
+    /**
+     * @param frameTimeNanos start of the frame, in the {@link System#nanoTime()} time base
+     */
+    void onFrame(long frameTimeNanos);
+  }
+
+
+  /**
+   * Calls the listener once on the next frame.
+   */
+  void postFrameCallback(FrameListener frameListener);
+
+}
@@ -0,0 +1,132 @@
+package org.bambi.overwatch.xposed.diagnostics;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.bambi.overwatch.xposed.util.LatencyHistogram;
+
+/**
+ * Latency of opening a view, the first open of every view apart from the later ones and split by whether the view
+ * was prewarmed before. Opens are timed on the thread running them, from the open call to the first draw after it;
+ * views are only weakly referenced.
+ */
+public class OpenLatencyMonitor implements DiagnosticsReceiver.ReportSource {
+
+  private static final class OpenState {
+    long startNanos;
+    // an open started and not ended yet, a draw ends only the last open started before it
+    boolean open;
+    // the view opened last on the thread, its later opens skip the lookup
+    WeakReference<Object> lastView = new WeakReference<>(null);
+  }
+
+
+  private final String name;
+
+  private final ThreadLocal<OpenState> openStates = new ThreadLocal<OpenState>() {
+    @Override
+    protected OpenState initialValue() {
+      return new OpenState();
+    }
+  };
+
+  // views opened before, and prewarmed ones not opened yet with true
+  private final Map<Object, Boolean> views = new WeakHashMap<>();
+
+  private final LatencyHistogram prewarmLatency = new LatencyHistogram();
+  private final LatencyHistogram prewarmedFirstOpenLatency = new LatencyHistogram();
+  private final LatencyHistogram coldFirstOpenLatency = new LatencyHistogram();
+  private final LatencyHistogram laterOpenLatency = new LatencyHistogram();
+
+
+  public OpenLatencyMonitor(String name) {
+    this.name = name;
+  }
+
+
+  /**
+   * Records the prewarm of a view not opened yet, taking the given time.
+   */
+  public void prewarmed(Object view, long nanos) {
+    prewarmLatency.record(nanos);
+
+    synchronized(views) {
+      if(!views.containsKey(view)) {
+        views.put(view, Boolean.TRUE);
+      }
+    }
+  }
+
+
+  public void startOpen() {
+    OpenState openState = openStates.get();
+    openState.startNanos = System.nanoTime();
+    openState.open = true;
+  }
+
+
+  /**
+   * Ends the open of the view started last on this thread, e.g. when the view is about to be drawn. Does nothing when
+   * the open was ended already.
+   */
+  public void endOpen(Object view) {
+    OpenState openState = openStates.get();
+
+    if(!openState.open) {
+      return;
+    }
+
+    long nanos = System.nanoTime() - openState.startNanos;
+    openState.open = false;
+
+    if(openState.lastView.get() == view) {
+      laterOpenLatency.record(nanos);
+      return;
+    }
+
+    Boolean prewarmed;
+
+    synchronized(views) {
+      prewarmed = views.put(view, Boolean.FALSE);
+    }
+
+    openState.lastView = new WeakReference<>(view);
+
+    if(prewarmed == null) {
+      coldFirstOpenLatency.record(nanos);
+    }
+    else if(prewarmed) {
+      prewarmedFirstOpenLatency.record(nanos);
+    }
+    else {
+      laterOpenLatency.record(nanos);
+    }
+  }
+
+
+  @Override
+  public void appendReport(List<String> report) {
+    report.add(String.format("%s open latency:", name));
+    report.add(String.format("prewarm: %s", prewarmLatency));
+    report.add(String.format("first open, prewarmed: %s", prewarmedFirstOpenLatency));
+    report.add(String.format("first open, cold: %s", coldFirstOpenLatency));
+    report.add(String.format("later opens: %s", laterOpenLatency));
+    report.add(String.format("first open over later opens, p50: prewarmed %s, cold %s",
+        formatGap(prewarmedFirstOpenLatency), formatGap(coldFirstOpenLatency)));
+  }
+
+
+  /**
+   * Median time the first opens take longer than the later ones, how much of the first use setup is left.
+   */
+  private String formatGap(LatencyHistogram firstOpenLatency) {
+    if(firstOpenLatency.getCount() == 0 || laterOpenLatency.getCount() == 0) {
+      return "n/a";
+    }
+
+    return String.format("%+.1fus", (firstOpenLatency.getPercentileNanos(50) - laterOpenLatency.getPercentileNanos(50)) / 1000.0);
+  }
+
+}
@@ -0,0 +1,247 @@
+package org.bambi.overwatch.xposed.diagnostics;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bambi.overwatch.xposed.util.OverwatchLog;
+
+/**
+ * Records frame intervals of a view transition from its start until it settles and aggregates them per transition
+ * name: frames over budget, worst frame and total transition time.
+ *
+ * <p>A frame is over budget when it took longer than one and a half frame budgets, that is it missed at least one
+ * vsync. A transition settles with the first of {@link #SETTLE_FRAMES} consecutive frames within budget, or is cut
+ * off after {@link #MAX_TRANSITION_NANOS}. Settle frames are not counted. Intervals are measured from the first frame
+ * callback, its vsync time can be earlier than the start of the transition.
+ *
+ * <p>Not thread safe, has to be confined to the thread its {@link FrameSource} calls back on.
+ */
+public class TransitionJankMonitor implements FrameSource.FrameListener, DiagnosticsReceiver.ReportSource {
+
+  public interface Clock {
+    Clock SYSTEM = new Clock() {
+      @Override
+      public long nanoTime() {
+        return System.nanoTime();
+      }
+    };
+
+    long nanoTime();
+  }
+
+
+  public static final class Statistics {
+    private final String name;
+
+    private int transitions;
+    private long frames;
+    private long framesOverBudget;
+    private long worstFrameNanos;
+    private long totalTransitionNanos;
+    private long worstTransitionNanos;
+
+    Statistics(String name) {
+      this.name = name;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public int getTransitions() {
+      return transitions;
+    }
+
+    public long getFrames() {
+      return frames;
+    }
+
+    public long getFramesOverBudget() {
+      return framesOverBudget;
+    }
+
+    public long getWorstFrameNanos() {
+      return worstFrameNanos;
+    }
+
+    public long getTotalTransitionNanos() {
+      return totalTransitionNanos;
+    }
+
+    public long getWorstTransitionNanos() {
+      return worstTransitionNanos;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s: transitions=%d, frames=%d, overBudget=%d, worstFrame=%.1fms, avgTransition=%.1fms, worstTransition=%.1fms",
+          name, transitions, frames, framesOverBudget,
+          worstFrameNanos / 1e6,
+          transitions != 0 ? totalTransitionNanos / 1e6 / transitions : 0.0,
+          worstTransitionNanos / 1e6);
+    }
+  }
+
+
+  public static final long DEFAULT_FRAME_BUDGET_NANOS = 16666667L;
+
+  static final int SETTLE_FRAMES = 3;
+  static final long MAX_TRANSITION_NANOS = 2000000000L;
+
+
+  private final FrameSource frameSource;
+  private final Clock clock;
+  private final long overBudgetNanos;
+
+  private final Map<String, Statistics> statistics = new LinkedHashMap<>();
+
+  private Statistics currentStatistics;
+  private boolean framePosted;
+  private long startNanos;
+  private long lastFrameNanos;
+  private boolean firstFrame;
+  private int frames;
+  private int framesOverBudget;
+  private long worstFrameNanos;
+
+  private int settleFrames;
+  private long settleStartNanos;
+  private int settleStartFrames;
+  private int settleStartFramesOverBudget;
+  private long settleStartWorstFrameNanos;
+
+
+  public TransitionJankMonitor(FrameSource frameSource, Clock clock, long frameBudgetNanos) {
+    this.frameSource = frameSource;
+    this.clock = clock;
+    this.overBudgetNanos = frameBudgetNanos * 3 / 2;
+  }
+
+
+  public void startTransition(String name) {
+    if(currentStatistics != null) {
+      finishTransition(lastFrameNanos, frames, framesOverBudget, worstFrameNanos);
+    }
+
+    Statistics transitionStatistics = statistics.get(name);
+
+    if(transitionStatistics == null) {
+      transitionStatistics = new Statistics(name);
+      statistics.put(name, transitionStatistics);
+    }
+
+    currentStatistics = transitionStatistics;
+    startNanos = clock.nanoTime();
+    lastFrameNanos = startNanos;
+    firstFrame = true;
+    frames = 0;
+    framesOverBudget = 0;
+    worstFrameNanos = 0L;
+    settleFrames = 0;
+
+    // a restarted transition keeps the callback of the previous one
+    postFrame();
+  }
+
+
+  private void postFrame() {
+    if(!framePosted) {
+      framePosted = true;
+      frameSource.postFrameCallback(this);
+    }
+  }
+
+
+  public boolean isTransitionInProgress() {
+    return currentStatistics != null;
+  }
+
+
+  public Statistics getStatistics(String name) {
+    return statistics.get(name);
+  }
+
+
+  @Override
+  public void onFrame(long frameTimeNanos) {
+    framePosted = false;
+
+    if(currentStatistics == null) {
+      return;
+    }
+
+    if(firstFrame) {
+      // baseline only, the vsync of the first frame may have been before the transition started
+      firstFrame = false;
+      startNanos = Math.min(startNanos, frameTimeNanos);
+      lastFrameNanos = frameTimeNanos;
+      postFrame();
+      return;
+    }
+
+    long frameNanos = frameTimeNanos - lastFrameNanos;
+    lastFrameNanos = frameTimeNanos;
+
+    if(frameNanos > overBudgetNanos) {
+      settleFrames = 0;
+    }
+    else if(settleFrames++ == 0) {
+      settleStartNanos = frameTimeNanos - frameNanos;
+      settleStartFrames = frames;
+      settleStartFramesOverBudget = framesOverBudget;
+      settleStartWorstFrameNanos = worstFrameNanos;
+    }
+
+    frames++;
+
+    if(frameNanos > overBudgetNanos) {
+      framesOverBudget++;
+    }
+
+    if(frameNanos > worstFrameNanos) {
+      worstFrameNanos = frameNanos;
+    }
+
+    if(settleFrames >= SETTLE_FRAMES) {
+      finishTransition(settleStartNanos, settleStartFrames, settleStartFramesOverBudget, settleStartWorstFrameNanos);
+    }
+    else if(frameTimeNanos - startNanos >= MAX_TRANSITION_NANOS) {
+      finishTransition(frameTimeNanos, frames, framesOverBudget, worstFrameNanos);
+    }
+    else {
+      postFrame();
+    }
+  }
+
+
+  private void finishTransition(long endNanos, int frames, int framesOverBudget, long worstFrameNanos) {
+    Statistics transitionStatistics = currentStatistics;
+    long transitionNanos = Math.max(0L, endNanos - startNanos);
+
+    transitionStatistics.transitions++;
+    transitionStatistics.frames += frames;
+    transitionStatistics.framesOverBudget += framesOverBudget;
+    transitionStatistics.worstFrameNanos = Math.max(transitionStatistics.worstFrameNanos, worstFrameNanos);
+    transitionStatistics.totalTransitionNanos += transitionNanos;
+    transitionStatistics.worstTransitionNanos = Math.max(transitionStatistics.worstTransitionNanos, transitionNanos);
+
+    currentStatistics = null;
+
+    if(OverwatchLog.isLoggable(OverwatchLog.INFO)) {
+      OverwatchLog.log(OverwatchLog.INFO, "Transition %s: %d frames, %d over budget, worst frame %.1fms, %.1fms total",
+          transitionStatistics.getName(), frames, framesOverBudget, worstFrameNanos / 1e6, transitionNanos / 1e6);
+    }
+  }
+
+
+  @Override
+  public void appendReport(List<String> report) {
+    report.add("Transition jank:");
+
+    for(Statistics transitionStatistics : statistics.values()) {
+      report.add(transitionStatistics.toString());
+    }
+  }
+
+}
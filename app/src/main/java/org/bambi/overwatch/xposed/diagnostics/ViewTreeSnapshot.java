@@ -0,0 +1,380 @@
+package org.bambi.overwatch.xposed.diagnostics;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Structural snapshot of a view hierarchy: id, class, focus and visibility flags and bounds (relative to the parent)
+ * of every view in pre-order. Capturing walks the hierarchy iteratively into reusable arrays, once grown a snapshot
+ * captures without allocating, so it can run on the UI thread. Writing, reading and diffing are meant for a
+ * background thread.
+ *
+ * <p>The text format streams one node per line after the class table:
+ * <pre>
+ * view-tree &lt;version&gt; &lt;nodes&gt; &lt;classes&gt; &lt;truncated&gt;
+ * &lt;class name&gt;
+ * &lt;depth&gt; &lt;id hex&gt; &lt;flags hex&gt; &lt;left&gt; &lt;top&gt; &lt;right&gt; &lt;bottom&gt; &lt;class index&gt;
+ * </pre>
+ */
+public class ViewTreeSnapshot {
+
+  public static final int DEFAULT_MAX_DEPTH = 48;
+  public static final int DEFAULT_MAX_NODES = 4096;
+
+  static final int FLAG_FOCUSABLE = 0x01;
+  static final int FLAG_FOCUSABLE_IN_TOUCH_MODE = 0x02;
+  static final int FLAG_FOCUSED = 0x04;
+  static final int FLAG_LAYOUT_REQUESTED = 0x08;
+  // View.VISIBLE, INVISIBLE and GONE are 0, 4 and 8, stored shifted into bits 4 and 5
+  static final int FLAG_VISIBILITY_SHIFT = 2;
+
+  private static final String FORMAT_HEADER = "view-tree";
+  private static final int FORMAT_VERSION = 1;
+
+  private static final int INITIAL_CAPACITY = 256;
+
+
+  private int nodeCount;
+  private boolean truncated;
+
+  private int[] depths = new int[INITIAL_CAPACITY];
+  private int[] ids = new int[INITIAL_CAPACITY];
+  private int[] flags = new int[INITIAL_CAPACITY];
+  private int[] bounds = new int[INITIAL_CAPACITY * 4];
+  private int[] classIndices = new int[INITIAL_CAPACITY];
+
+  private final List<Class<?>> classes = new ArrayList<>();
+  private final List<String> classNames = new ArrayList<>();
+  private int lastClassIndex;
+
+  private ViewGroup[] stackViewGroups = new ViewGroup[16];
+  private int[] stackNextChildren = new int[16];
+
+
+  public int getNodeCount() {
+    return nodeCount;
+  }
+
+
+  public boolean isTruncated() {
+    return truncated;
+  }
+
+
+  /**
+   * Replaces the content of this snapshot with the hierarchy below the given view. Views deeper than
+   * {@code maxDepth} or beyond {@code maxNodes} are left out and mark the snapshot as truncated.
+   */
+  public void capture(View root, int maxDepth, int maxNodes) {
+    nodeCount = 0;
+    truncated = false;
+    classes.clear();
+    classNames.clear();
+    lastClassIndex = 0;
+
+    if(maxNodes <= 0) {
+      truncated = true;
+      return;
+    }
+
+    int stackSize = 0;
+    add(root, 0);
+
+    if(root instanceof ViewGroup) {
+      stackSize = push(stackSize, (ViewGroup)root, maxDepth);
+    }
+
+    while(stackSize > 0) {
+      ViewGroup viewGroup = stackViewGroups[stackSize - 1];
+      int childIndex = stackNextChildren[stackSize - 1];
+
+      if(childIndex >= viewGroup.getChildCount()) {
+        stackViewGroups[--stackSize] = null;
+        continue;
+      }
+
+      stackNextChildren[stackSize - 1] = childIndex + 1;
+      View child = viewGroup.getChildAt(childIndex);
+
+      if(child == null) {
+        continue;
+      }
+
+      if(nodeCount >= maxNodes) {
+        truncated = true;
+        break;
+      }
+
+      add(child, stackSize);
+
+      if(child instanceof ViewGroup) {
+        stackSize = push(stackSize, (ViewGroup)child, maxDepth);
+      }
+    }
+
+    // do not keep views of the captured hierarchy alive
+    Arrays.fill(stackViewGroups, 0, stackSize, null);
+    classes.clear();
+  }
+
+
+  private int push(int stackSize, ViewGroup viewGroup, int maxDepth) {
+    if(stackSize >= maxDepth) {
+      truncated |= viewGroup.getChildCount() > 0;
+      return stackSize;
+    }
+
+    if(stackSize == stackViewGroups.length) {
+      stackViewGroups = Arrays.copyOf(stackViewGroups, stackSize * 2);
+      stackNextChildren = Arrays.copyOf(stackNextChildren, stackSize * 2);
+    }
+
+    stackViewGroups[stackSize] = viewGroup;
+    stackNextChildren[stackSize] = 0;
+
+    return stackSize + 1;
+  }
+
+
+  private void add(View view, int depth) {
+    ensureCapacity(nodeCount + 1);
+
+    int nodeFlags = (view.getVisibility() >> FLAG_VISIBILITY_SHIFT) << 4;
+
+    if(view.isFocusable()) {
+      nodeFlags |= FLAG_FOCUSABLE;
+    }
+    if(view.isFocusableInTouchMode()) {
+      nodeFlags |= FLAG_FOCUSABLE_IN_TOUCH_MODE;
+    }
+    if(view.isFocused()) {
+      nodeFlags |= FLAG_FOCUSED;
+    }
+    if(view.isLayoutRequested()) {
+      nodeFlags |= FLAG_LAYOUT_REQUESTED;
+    }
+
+    depths[nodeCount] = depth;
+    ids[nodeCount] = view.getId();
+    flags[nodeCount] = nodeFlags;
+    bounds[nodeCount * 4] = view.getLeft();
+    bounds[nodeCount * 4 + 1] = view.getTop();
+    bounds[nodeCount * 4 + 2] = view.getRight();
+    bounds[nodeCount * 4 + 3] = view.getBottom();
+    classIndices[nodeCount] = getClassIndex(view.getClass());
+
+    nodeCount++;
+  }
+
+
+  private int getClassIndex(Class<?> clazz) {
+    if(lastClassIndex < classes.size() && classes.get(lastClassIndex) == clazz) {
+      return lastClassIndex;
+    }
+
+    for(int i = 0; i < classes.size(); i++) {
+      if(classes.get(i) == clazz) {
+        return lastClassIndex = i;
+      }
+    }
+
+    classes.add(clazz);
+    classNames.add(clazz.getName());
+
+    return lastClassIndex = classes.size() - 1;
+  }
+
+
+  private void ensureCapacity(int capacity) {
+    if(capacity > depths.length) {
+      int newCapacity = Math.max(capacity, depths.length * 2);
+
+      depths = Arrays.copyOf(depths, newCapacity);
+      ids = Arrays.copyOf(ids, newCapacity);
+      flags = Arrays.copyOf(flags, newCapacity);
+      bounds = Arrays.copyOf(bounds, newCapacity * 4);
+      classIndices = Arrays.copyOf(classIndices, newCapacity);
+    }
+  }
+
+
+  public void writeTo(Writer writer) throws IOException {
+    writer.write(FORMAT_HEADER + " " + FORMAT_VERSION + " " + nodeCount + " " + classNames.size() + " " + truncated + "\n");
+
+    for(String className : classNames) {
+      writer.write(className);
+      writer.write('\n');
+    }
+
+    StringBuilder line = new StringBuilder(64);
+
+    for(int i = 0; i < nodeCount; i++) {
+      line.setLength(0);
+      line.append(depths[i]).append(' ')
+          .append(Integer.toHexString(ids[i])).append(' ')
+          .append(Integer.toHexString(flags[i])).append(' ')
+          .append(bounds[i * 4]).append(' ')
+          .append(bounds[i * 4 + 1]).append(' ')
+          .append(bounds[i * 4 + 2]).append(' ')
+          .append(bounds[i * 4 + 3]).append(' ')
+          .append(classIndices[i]).append('\n');
+
+      writer.append(line);
+    }
+  }
+
+
+  public static ViewTreeSnapshot readFrom(Reader reader) throws IOException {
+    BufferedReader lineReader = new BufferedReader(reader);
+    String[] header = readLine(lineReader).split(" ");
+
+    if(header.length != 5 || !FORMAT_HEADER.equals(header[0]) || Integer.parseInt(header[1]) != FORMAT_VERSION) {
+      throw new IOException("Unsupported view tree snapshot");
+    }
+
+    ViewTreeSnapshot snapshot = new ViewTreeSnapshot();
+    int nodeCount = Integer.parseInt(header[2]);
+    int classCount = Integer.parseInt(header[3]);
+
+    snapshot.truncated = Boolean.parseBoolean(header[4]);
+    snapshot.ensureCapacity(nodeCount);
+
+    for(int i = 0; i < classCount; i++) {
+      snapshot.classNames.add(readLine(lineReader));
+    }
+
+    try {
+      for(int i = 0; i < nodeCount; i++) {
+        String[] node = readLine(lineReader).split(" ");
+
+        snapshot.depths[i] = Integer.parseInt(node[0]);
+        snapshot.ids[i] = (int)Long.parseLong(node[1], 16);
+        snapshot.flags[i] = Integer.parseInt(node[2], 16);
+
+        for(int j = 0; j < 4; j++) {
+          snapshot.bounds[i * 4 + j] = Integer.parseInt(node[3 + j]);
+        }
+
+        snapshot.classIndices[i] = Integer.parseInt(node[7]);
+      }
+    }
+    catch(RuntimeException exception) {
+      throw new IOException("Malformed view tree snapshot", exception);
+    }
+
+    snapshot.nodeCount = nodeCount;
+
+    return snapshot;
+  }
+
+
+  private static String readLine(BufferedReader reader) throws IOException {
+    String line = reader.readLine();
+
+    if(line == null) {
+      throw new IOException("Truncated view tree snapshot");
+    }
+
+    return line;
+  }
+
+
+  /**
+   * Compares two snapshots, views are matched by their path of class names, ids and positions among equal siblings.
+   * Adds one line per added ({@code +}), removed ({@code -}) or changed ({@code ~}) view to the report.
+   *
+   * @return number of differences
+   */
+  public static int diff(ViewTreeSnapshot oldSnapshot, ViewTreeSnapshot newSnapshot, List<String> report) {
+    String[] oldPaths = oldSnapshot.getPaths();
+    String[] newPaths = newSnapshot.getPaths();
+
+    Map<String, Integer> oldNodes = new HashMap<>(oldPaths.length * 2);
+
+    for(int i = 0; i < oldPaths.length; i++) {
+      oldNodes.put(oldPaths[i], i);
+    }
+
+    int differences = 0;
+
+    for(int i = 0; i < newPaths.length; i++) {
+      Integer oldIndex = oldNodes.remove(newPaths[i]);
+
+      if(oldIndex == null) {
+        report.add("+ " + newPaths[i] + " " + newSnapshot.describe(i));
+        differences++;
+      }
+      else if(!oldSnapshot.equalsNode(oldIndex, newSnapshot, i)) {
+        report.add("~ " + newPaths[i] + " " + oldSnapshot.describe(oldIndex) + " -> " + newSnapshot.describe(i));
+        differences++;
+      }
+    }
+
+    for(int i = 0; i < oldPaths.length; i++) {
+      if(oldNodes.containsKey(oldPaths[i])) {
+        report.add("- " + oldPaths[i] + " " + oldSnapshot.describe(i));
+        differences++;
+      }
+    }
+
+    return differences;
+  }
+
+
+  private String[] getPaths() {
+    String[] paths = new String[nodeCount];
+    String[] ancestorPaths = new String[nodeCount + 1];
+    Map<String, Integer> pathCounts = new HashMap<>(nodeCount * 2);
+
+    for(int i = 0; i < nodeCount; i++) {
+      String className = classNames.get(classIndices[i]);
+      String path = (depths[i] > 0 ? ancestorPaths[depths[i] - 1] : "") + "/" +
+                    className.substring(className.lastIndexOf('.') + 1) + "#" + Integer.toHexString(ids[i]);
+
+      Integer pathCount = pathCounts.get(path);
+      pathCounts.put(path, pathCount == null ? 1 : pathCount + 1);
+
+      if(pathCount != null) {
+        path = path + "[" + pathCount + "]";
+      }
+
+      paths[i] = path;
+      ancestorPaths[depths[i]] = path;
+    }
+
+    return paths;
+  }
+
+
+  private boolean equalsNode(int index, ViewTreeSnapshot other, int otherIndex) {
+    if(flags[index] != other.flags[otherIndex]) {
+      return false;
+    }
+
+    for(int j = 0; j < 4; j++) {
+      if(bounds[index * 4 + j] != other.bounds[otherIndex * 4 + j]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+
+  private String describe(int index) {
+    return String.format(
+        "[%d,%d][%d,%d] flags=%x",
+        bounds[index * 4], bounds[index * 4 + 1], bounds[index * 4 + 2], bounds[index * 4 + 3], flags[index]);
+  }
+
+}
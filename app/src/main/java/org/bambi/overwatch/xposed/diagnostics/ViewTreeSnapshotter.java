@@ -0,0 +1,133 @@
+package org.bambi.overwatch.xposed.diagnostics;
+
+import static org.bambi.overwatch.xposed.util.XposedUtils.log;
+import static org.bambi.overwatch.xposed.util.XposedUtils.logException;
+
+import android.view.View;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Captures {@link ViewTreeSnapshot}s on the UI thread and writes them on a background thread to
+ * {@code view_tree.txt}, together with {@code view_tree.diff.txt} against the snapshot written before. The last
+ * snapshot is kept on disk, the first snapshot after a launcher update is compared to the one of the old version.
+ *
+ * <p>The two snapshot buffers are reused, a snapshot requested while the previous one is still being written is
+ * skipped.
+ */
+public class ViewTreeSnapshotter {
+
+  private static final String SNAPSHOT_FILE_NAME = "view_tree.txt";
+  private static final String PREVIOUS_SNAPSHOT_FILE_NAME = "view_tree.previous.txt";
+  private static final String DIFF_FILE_NAME = "view_tree.diff.txt";
+
+  private final int maxDepth;
+  private final int maxNodes;
+
+  private final AtomicBoolean writing = new AtomicBoolean();
+  private ViewTreeSnapshot currentSnapshot = new ViewTreeSnapshot();
+  private ViewTreeSnapshot previousSnapshot;
+
+
+  public ViewTreeSnapshotter(int maxDepth, int maxNodes) {
+    this.maxDepth = maxDepth;
+    this.maxNodes = maxNodes;
+  }
+
+
+  /**
+   * Captures the hierarchy below the given view, must be called on its UI thread.
+   *
+   * @return {@code false} when skipped because the previous snapshot is still being written
+   */
+  public boolean snapshotAsync(View root, final File directory) {
+    if(!writing.compareAndSet(false, true)) {
+      log("View tree snapshot skipped, previous snapshot is still being written");
+      return false;
+    }
+
+    currentSnapshot.capture(root, maxDepth, maxNodes);
+
+    Thread writeThread = new Thread("Overwatch-ViewTree") {
+      @Override
+      public void run() {
+        try {
+          write(directory);
+        }
+        catch(IOException exception) {
+          log("Failed to write view tree snapshot to %s", directory);
+          logException(exception);
+        }
+        finally {
+          ViewTreeSnapshot snapshot = previousSnapshot;
+          previousSnapshot = currentSnapshot;
+          currentSnapshot = snapshot != null ? snapshot : new ViewTreeSnapshot();
+
+          writing.set(false);
+        }
+      }
+    };
+
+    writeThread.setDaemon(true);
+    writeThread.start();
+
+    return true;
+  }
+
+
+  private void write(File directory) throws IOException {
+    if(!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create directory " + directory);
+    }
+
+    File snapshotFile = new File(directory, SNAPSHOT_FILE_NAME);
+    File previousSnapshotFile = new File(directory, PREVIOUS_SNAPSHOT_FILE_NAME);
+
+    if(snapshotFile.isFile() && !snapshotFile.renameTo(previousSnapshotFile)) {
+      throw new IOException("Cannot rename " + snapshotFile + " to " + previousSnapshotFile);
+    }
+
+    try(Writer writer = new OutputStreamWriter(new FileOutputStream(snapshotFile), StandardCharsets.UTF_8)) {
+      currentSnapshot.writeTo(writer);
+    }
+
+    log(
+        "View tree snapshot of %d views%s written to %s",
+        currentSnapshot.getNodeCount(), currentSnapshot.isTruncated() ? " (truncated)" : "", snapshotFile);
+
+    if(previousSnapshot == null && previousSnapshotFile.isFile()) {
+      try(InputStreamReader reader = new InputStreamReader(new FileInputStream(previousSnapshotFile), StandardCharsets.UTF_8)) {
+        previousSnapshot = ViewTreeSnapshot.readFrom(reader);
+      }
+      catch(IOException exception) {
+        log("Ignoring unreadable view tree snapshot %s", previousSnapshotFile);
+      }
+    }
+
+    if(previousSnapshot != null) {
+      List<String> diff = new ArrayList<>();
+      int differences = ViewTreeSnapshot.diff(previousSnapshot, currentSnapshot, diff);
+      File diffFile = new File(directory, DIFF_FILE_NAME);
+
+      try(Writer writer = new OutputStreamWriter(new FileOutputStream(diffFile), StandardCharsets.UTF_8)) {
+        for(String line : diff) {
+          writer.write(line);
+          writer.write('\n');
+        }
+      }
+
+      log("View tree differs from previous snapshot in %d views, see %s", differences, diffFile);
+    }
+  }
+
+}
@@ -0,0 +1,673 @@
+package org.bambi.overwatch.xposed.nova;
+
+import static org.bambi.overwatch.xposed.util.XposedUtils.log;
+import static org.bambi.overwatch.xposed.util.XposedUtils.logException;
+import static org.bambi.overwatch.xposed.util.XposedUtils.setHookTargetCache;
+
+import android.animation.Animator;
+import android.animation.AnimatorSet;
+import android.animation.ObjectAnimator;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.view.View;
+import android.view.ViewParent;
+import android.view.ViewTreeObserver;
+import android.widget.LinearLayout;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import de.robv.android.xposed.XC_MethodHook;
+import de.robv.android.xposed.XC_MethodReplacement;
+import de.robv.android.xposed.callbacks.XC_LoadPackage;
+
+import org.bambi.overwatch.xposed.HookBundle;
+import org.bambi.overwatch.xposed.diagnostics.ChoreographerFrameSource;
+import org.bambi.overwatch.xposed.diagnostics.DiagnosticsReceiver;
+import org.bambi.overwatch.xposed.diagnostics.OpenLatencyMonitor;
+import org.bambi.overwatch.xposed.diagnostics.TransitionJankMonitor;
+import org.bambi.overwatch.xposed.settings.OverwatchSettings;
+import org.bambi.overwatch.xposed.settings.SettingsReader;
+import org.bambi.overwatch.xposed.util.FieldAccessor;
+import org.bambi.overwatch.xposed.util.HookDispatcher;
+import org.bambi.overwatch.xposed.util.HookInstaller;
+import org.bambi.overwatch.xposed.util.HookTargetCache;
+import org.bambi.overwatch.xposed.util.OverwatchLog;
+import org.bambi.overwatch.xposed.util.RetainedObjects;
+import org.bambi.overwatch.xposed.util.ScopedHook;
+import org.bambi.overwatch.xposed.util.WeakIdentityRegistry;
+import org.bambi.overwatch.xposed.view.LayoutMutation;
+
+/**
+ * Hooks of Nova Launcher's app search, created by {@code OverwatchMain} in the launcher process only.
+ */
+public class NovaLauncherHooks implements HookBundle {
+
+  /**
+   * Transition of AppSearchView running on the thread, set by the {@link ShowHideHook} entering its scope.
+   */
+  static final class TransitionState {
+    boolean show;
+    boolean instant;
+    // the AppSearchView showing or hiding, its background color animator identifies the transition's AnimatorSet
+    Object appSearchView;
+    // the transition's AnimatorSet was found, later sets of the show or hide are left alone
+    boolean found;
+    // the transition's AnimatorSet while its start runs in instant mode, ended once started
+    AnimatorSet instantTransition;
+  }
+
+  /**
+   * Plays the transition instantly to the configured color, in the direction its {@link ShowHideHook} set. The
+   * transition is the AnimatorSet animating the background color of the AppSearchView, whichever way it was built.
+   * In instant mode the transition also ends as soon as it started, before its first frame.
+   */
+  class ShowHideAnimationHook extends XC_MethodHook {
+    @Override
+    protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
+      TransitionState transitionState = transitionStates.get();
+
+      // another AnimatorSet started after the transition, or one started by the transition's own start
+      if(transitionState.found) {
+        return;
+      }
+
+      ObjectAnimator backgroundColorAnimator = findBackgroundColorAnimator((AnimatorSet)param.thisObject, transitionState.appSearchView);
+
+      // any other AnimatorSet started during the transition
+      if(backgroundColorAnimator == null) {
+        return;
+      }
+
+      transitionState.found = true;
+
+      int animationTargetColor = settingsReader.get().getAppSearchViewBackgroundColor();
+      boolean animationShow = transitionState.show;
+
+      if(OverwatchLog.isLoggable(OverwatchLog.DEBUG)) {
+        OverwatchLog.log(OverwatchLog.DEBUG, "AnimatorSet.start() hook for %08x and %b", animationTargetColor, animationShow);
+      }
+
+      if(animationShow) {
+        backgroundColorAnimator.setIntValues(0, animationTargetColor);
+      }
+      else {
+        backgroundColorAnimator.setIntValues(animationTargetColor, 0);
+      }
+
+      ((AnimatorSet)param.thisObject).setDuration(0L);
+
+      if(transitionState.instant) {
+        transitionState.instantTransition = (AnimatorSet)param.thisObject;
+      }
+    }
+
+    @Override
+    protected void afterHookedMethod(MethodHookParam param) throws Throwable {
+      TransitionState transitionState = transitionStates.get();
+
+      // sets started by the transition's own start are left alone
+      if(transitionState.instantTransition == param.thisObject) {
+        transitionState.instantTransition = null;
+
+        // applies the end values and runs Nova's end listeners right away
+        ((AnimatorSet)param.thisObject).end();
+      }
+    }
+  }
+
+  /**
+   * Switches the transition handlers to settings read since the last transition, the switch applies from the next
+   * transition. The settings are read in background when the launcher starts or resumes.
+   */
+  class TransitionSettingsHook extends XC_MethodHook {
+    @Override
+    protected void beforeHookedMethod(MethodHookParam methodHookParam) {
+      OverwatchSettings settings = settingsReader.get();
+
+      if(settings.getGeneration() != appliedSettingsGeneration) {
+        applyTransitionSettings(settings);
+        applyLayoutSettings(methodHookParam.thisObject, settings);
+      }
+    }
+  }
+
+  class JankMonitorHook extends XC_MethodHook {
+    private boolean show;
+
+    JankMonitorHook(boolean show) {
+      this.show = show;
+    }
+
+    @Override
+    protected void beforeHookedMethod(MethodHookParam methodHookParam) {
+      getJankMonitor().startTransition(show ? TRANSITION__APP_SEARCH_VIEW_SHOW : TRANSITION__APP_SEARCH_VIEW_HIDE);
+    }
+  }
+
+  /**
+   * Times the show of AppSearchView up to its first draw, which includes the layout the show requests. A hide before
+   * that draw removes the draw listener.
+   */
+  class OpenLatencyHook extends XC_MethodHook {
+    private boolean show;
+
+    OpenLatencyHook(boolean show) {
+      this.show = show;
+    }
+
+    @Override
+    protected void beforeHookedMethod(MethodHookParam methodHookParam) {
+      if(show) {
+        openLatencyMonitor.startOpen();
+        return;
+      }
+
+      OpenLatencyDrawListener drawListener = getOpenLatencyDrawListener((View)methodHookParam.thisObject, false);
+
+      if(drawListener != null) {
+        drawListener.remove();
+      }
+    }
+
+    @Override
+    protected void afterHookedMethod(MethodHookParam methodHookParam) {
+      if(show) {
+        getOpenLatencyDrawListener((View)methodHookParam.thisObject, true).add();
+      }
+    }
+  }
+
+  /**
+   * Ends the timed open of an AppSearchView at its first draw after the show, one per view and reused by its shows.
+   * Only used on the main thread.
+   */
+  class OpenLatencyDrawListener implements ViewTreeObserver.OnPreDrawListener {
+    // the listener is the value of its view in a weak map
+    private final WeakReference<View> appSearchView;
+    // set while added, the observer of the show may have been merged into the window's since
+    private ViewTreeObserver viewTreeObserver;
+
+    OpenLatencyDrawListener(View appSearchView) {
+      this.appSearchView = new WeakReference<>(appSearchView);
+    }
+
+    void add() {
+      View view = appSearchView.get();
+
+      if(viewTreeObserver == null && view != null) {
+        viewTreeObserver = view.getViewTreeObserver();
+        viewTreeObserver.addOnPreDrawListener(this);
+      }
+    }
+
+    void remove() {
+      if(viewTreeObserver == null) {
+        return;
+      }
+
+      View view = appSearchView.get();
+      ViewTreeObserver currentViewTreeObserver = view != null ? view.getViewTreeObserver() : viewTreeObserver;
+
+      if(currentViewTreeObserver.isAlive()) {
+        currentViewTreeObserver.removeOnPreDrawListener(this);
+      }
+
+      viewTreeObserver = null;
+    }
+
+    @Override
+    public boolean onPreDraw() {
+      View view = appSearchView.get();
+      remove();
+
+      if(view != null) {
+        openLatencyMonitor.endOpen(view);
+      }
+
+      return true;
+    }
+  }
+
+  /**
+   * Scopes the AnimatorSet hook to AppSearchView's show or hide. Nova's method runs as is, its transition is played
+   * instantly by {@link ShowHideAnimationHook}.
+   */
+  class ShowHideHook extends XC_MethodHook {
+    private boolean show;
+    private boolean instant;
+    private ScopedHook showHideAnimationHook;
+
+    ShowHideHook(boolean show, boolean instant, ScopedHook showHideAnimationHook) {
+      this.show = show;
+      this.instant = instant;
+      this.showHideAnimationHook = showHideAnimationHook;
+    }
+
+    @Override
+    protected void beforeHookedMethod(MethodHookParam methodHookParam) {
+      // show and hide share the AnimatorSet hook, a transition never starts inside another one on the same thread
+      TransitionState transitionState = transitionStates.get();
+      transitionState.show = show;
+      transitionState.instant = instant;
+      transitionState.appSearchView = methodHookParam.thisObject;
+      transitionState.found = false;
+      showHideAnimationHook.enterScope();
+    }
+
+    @Override
+    protected void afterHookedMethod(MethodHookParam methodHookParam) throws Throwable {
+      showHideAnimationHook.exitScope();
+
+      TransitionState transitionState = transitionStates.get();
+      transitionState.appSearchView = null;
+      // a transition whose start threw
+      transitionState.instantTransition = null;
+
+      if(!transitionState.found && !unmatchedTransitionLogged) {
+        unmatchedTransitionLogged = true;
+        log("No AnimatorSet animating the AppSearchView background in %s, the transition plays as Nova built it",
+            show ? TRANSITION__APP_SEARCH_VIEW_SHOW : TRANSITION__APP_SEARCH_VIEW_HIDE);
+      }
+    }
+  }
+
+  /**
+   * Prewarms an AppSearchView once the main thread is idle after the launcher start.
+   */
+  class PrewarmIdleHandler implements MessageQueue.IdleHandler {
+    private final View appSearchView;
+
+    PrewarmIdleHandler(View appSearchView) {
+      this.appSearchView = appSearchView;
+    }
+
+    @Override
+    public boolean queueIdle() {
+      long startNanos = System.nanoTime();
+
+      try {
+        prewarm(appSearchView);
+        openLatencyMonitor.prewarmed(appSearchView, System.nanoTime() - startNanos);
+      }
+      catch(Throwable exception) {
+        log("Failed to prewarm AppSearchView");
+        logException(exception);
+      }
+
+      return false;
+    }
+  }
+
+
+  private static final String NOVA_LAUNCHER_CLASS__APP_SEARCH_VIEW = "com.teslacoilsw.launcher.AppSearchView";
+  private static final String NOVA_LAUNCHER_CLASS__LAUNCHER = "com.android.launcher3.Launcher";
+
+  private static final String ANIMATOR_SET_CLASS = "android.animation.AnimatorSet";
+
+  private static final String APP_SEARCH_VIEW_BACKGROUND_COLOR_PROPERTY = "backgroundColor";
+
+  // hook target ids shared with the hookmapper tool, their method names may be remapped per Nova Launcher build
+  private static final String HOOK_TARGET__APP_SEARCH_VIEW_SHOW = "AppSearchView.show";
+  private static final String HOOK_TARGET__APP_SEARCH_VIEW_HIDE = "AppSearchView.hide";
+  private static final String HOOK_TARGET__APP_SEARCH_VIEW_TOGGLE_KEYBOARD = "AppSearchView.toggleKeyboard";
+  private static final String HOOK_TARGET__LAUNCHER_SHOW_APP_SEARCH_VIEW = "Launcher.showAppSearchView";
+
+  // ids of the hook installer steps, used to order dependent hooks
+  private static final String HOOK_STEP__SET_LAUNCHER = "setLauncher";
+  private static final String HOOK_STEP__LAUNCHER_RESUME = "launcherResume";
+  private static final String HOOK_STEP__LAUNCHER_DESTROY = "launcherDestroy";
+  private static final String HOOK_STEP__TOGGLE_KEYBOARD = "toggleKeyboard";
+  private static final String HOOK_STEP__SHOW_APP_SEARCH_VIEW = "showAppSearchView";
+  private static final String HOOK_STEP__TRANSITION_ANIMATION = "transitionAnimation";
+  private static final String HOOK_STEP__SHOW = "show";
+  private static final String HOOK_STEP__HIDE = "hide";
+
+  // handlers of the show and hide dispatchers, in the order they run
+  private static final String HANDLER__SETTINGS = "settings";
+  private static final String HANDLER__JANK_MONITOR = "jankMonitor";
+  private static final String HANDLER__OPEN_LATENCY = "openLatency";
+  private static final String HANDLER__ANIMATION = "animation";
+  private static final String HANDLER__INSTANT_TRANSITION = "instantTransition";
+
+  private static final int HANDLER_ORDER__SETTINGS = 0;
+  private static final int HANDLER_ORDER__JANK_MONITOR = 10;
+  private static final int HANDLER_ORDER__OPEN_LATENCY = 20;
+  private static final int HANDLER_ORDER__ANIMATION = 30;
+  // the animation handler in instant mode, only one of them is enabled
+  private static final int HANDLER_ORDER__INSTANT_TRANSITION = 40;
+
+  private static final String TRANSITION__APP_SEARCH_VIEW_SHOW = "AppSearchView.show";
+  private static final String TRANSITION__APP_SEARCH_VIEW_HIDE = "AppSearchView.hide";
+
+  private static final FieldAccessor APP_SEARCH_VIEW__LINEAR_LAYOUT = FieldAccessor.of("mLinearLayout");
+  private static final FieldAccessor APP_SEARCH_VIEW__SEARCHBAR_BACKGROUND = FieldAccessor.of("mSearchbarBackground");
+  private static final FieldAccessor APP_SEARCH_VIEW__CONTENT_SCROLLVIEW_PARENT = FieldAccessor.of("mContentScrollviewParent");
+
+  private SettingsReader settingsReader;
+
+  private final ThreadLocal<TransitionState> transitionStates = new ThreadLocal<TransitionState>() {
+    @Override
+    protected TransitionState initialValue() {
+      return new TransitionState();
+    }
+  };
+  // prewarms queued by setLauncher and not run yet, by launcher; the message queue holds them and their view
+  private final WeakIdentityRegistry<PrewarmIdleHandler> prewarmIdleHandlers = new WeakIdentityRegistry<>(4);
+  private volatile TransitionJankMonitor jankMonitor;
+  private final OpenLatencyMonitor openLatencyMonitor = new OpenLatencyMonitor("AppSearchView");
+  private final Map<View, OpenLatencyDrawListener> openLatencyDrawListeners = new WeakHashMap<>();
+
+  // show and hide dispatchers, the transition handlers follow the settings without a launcher restart
+  private HookDispatcher[] transitionDispatchers = new HookDispatcher[0];
+  // only with the animation hooks or the instant transition enabled at the launcher start, their AnimatorSet hooks are
+  // installed once
+  private boolean animationHandlersAdded;
+  private volatile int appliedSettingsGeneration = -1;
+  // a Nova build whose transition is not found is reported once
+  private volatile boolean unmatchedTransitionLogged;
+
+
+  private TransitionJankMonitor getJankMonitor() {
+    TransitionJankMonitor jankMonitor = this.jankMonitor;
+
+    if(jankMonitor != null) {
+      return jankMonitor;
+    }
+
+    // created once, also when launchers of several threads show AppSearchView first at the same time
+    synchronized(this) {
+      if(this.jankMonitor == null) {
+        this.jankMonitor = new TransitionJankMonitor(
+            new ChoreographerFrameSource(),
+            TransitionJankMonitor.Clock.SYSTEM,
+            TransitionJankMonitor.DEFAULT_FRAME_BUDGET_NANOS);
+
+        DiagnosticsReceiver.addReportSource(this.jankMonitor);
+      }
+
+      return this.jankMonitor;
+    }
+  }
+
+
+  /**
+   * Returns the animator of the set or of a set nested in it animating the background color of the AppSearchView,
+   * {@code null} when there is none.
+   */
+  private static ObjectAnimator findBackgroundColorAnimator(AnimatorSet animatorSet, Object appSearchView) {
+    List<Animator> childAnimations = animatorSet.getChildAnimations();
+
+    for(int i = 0; i < childAnimations.size(); i++) {
+      Animator childAnimation = childAnimations.get(i);
+
+      if(childAnimation instanceof ObjectAnimator) {
+        ObjectAnimator objectAnimator = (ObjectAnimator)childAnimation;
+
+        // the property name of ofObject, setPropertyName and PropertyValuesHolder animators alike
+        if(objectAnimator.getTarget() == appSearchView && APP_SEARCH_VIEW_BACKGROUND_COLOR_PROPERTY.equals(objectAnimator.getPropertyName())) {
+          return objectAnimator;
+        }
+      }
+      else if(childAnimation instanceof AnimatorSet) {
+        ObjectAnimator objectAnimator = findBackgroundColorAnimator((AnimatorSet)childAnimation, appSearchView);
+
+        if(objectAnimator != null) {
+          return objectAnimator;
+        }
+      }
+    }
+
+    return null;
+  }
+
+
+  private OpenLatencyDrawListener getOpenLatencyDrawListener(View appSearchView, boolean create) {
+    synchronized(openLatencyDrawListeners) {
+      OpenLatencyDrawListener drawListener = openLatencyDrawListeners.get(appSearchView);
+
+      if(drawListener == null && create) {
+        drawListener = new OpenLatencyDrawListener(appSearchView);
+        openLatencyDrawListeners.put(appSearchView, drawListener);
+      }
+
+      return drawListener;
+    }
+  }
+
+
+  /**
+   * Runs the setup the first show of AppSearchView does lazily: the state of the transition hooks and a measure
+   * pass of its views at the size of its parent.
+   */
+  private void prewarm(View appSearchView) {
+    OverwatchSettings settings = settingsReader.get();
+
+    if(settings.isJankMonitorEnabled()) {
+      getJankMonitor();
+    }
+
+    ViewParent parent = appSearchView.getParent();
+
+    // the measure cache of the views serves the first layout after the show
+    if(parent instanceof View && ((View)parent).getWidth() > 0) {
+      appSearchView.measure(
+          View.MeasureSpec.makeMeasureSpec(((View)parent).getWidth(), View.MeasureSpec.EXACTLY),
+          View.MeasureSpec.makeMeasureSpec(((View)parent).getHeight(), View.MeasureSpec.EXACTLY));
+    }
+  }
+
+
+  private void applyTransitionSettings(OverwatchSettings settings) {
+    boolean instantTransition = settings.isInstantTransitionEnabled();
+
+    for(HookDispatcher transitionDispatcher : transitionDispatchers) {
+      transitionDispatcher.setEnabled(HANDLER__JANK_MONITOR, settings.isJankMonitorEnabled());
+      transitionDispatcher.setEnabled(HANDLER__OPEN_LATENCY, settings.isJankMonitorEnabled());
+
+      if(animationHandlersAdded) {
+        transitionDispatcher.setEnabled(HANDLER__ANIMATION, !instantTransition && settings.isAnimationHooksEnabled());
+        transitionDispatcher.setEnabled(HANDLER__INSTANT_TRANSITION, instantTransition);
+      }
+    }
+
+    appliedSettingsGeneration = settings.getGeneration();
+  }
+
+
+  /**
+   * Offsets the search bar and the results by the margins of the settings, or back to Nova's margins with the layout
+   * hooks disabled. Runs again with every new settings generation, the offsets apply to the original margins.
+   */
+  private static void applyLayoutSettings(Object appSearchView, OverwatchSettings settings) {
+    if(!FieldAccessor.prefetch(appSearchView.getClass(), APP_SEARCH_VIEW__SEARCHBAR_BACKGROUND, APP_SEARCH_VIEW__CONTENT_SCROLLVIEW_PARENT)) {
+      return;
+    }
+
+    boolean layoutHooksEnabled = settings.isLayoutHooksEnabled();
+
+    new LayoutMutation()
+        .offsetTopMargin(APP_SEARCH_VIEW__SEARCHBAR_BACKGROUND.<View>get(appSearchView), layoutHooksEnabled ? settings.getSearchbarTopMargin() : 0)
+        .offsetTopMargin(APP_SEARCH_VIEW__CONTENT_SCROLLVIEW_PARENT.<View>get(appSearchView), layoutHooksEnabled ? settings.getContentTopMargin() : 0)
+        .commit();
+  }
+
+
+  @Override
+  public void handleLoadPackage(final XC_LoadPackage.LoadPackageParam lpParam, String modulePath) {
+    log("handleLoadPackage called");
+
+    settingsReader = SettingsReader.load(lpParam.appInfo);
+    OverwatchSettings settings = settingsReader.get();
+
+    final HookTargetCache hookTargetCache = HookTargetCache.load(lpParam.appInfo, modulePath);
+    setHookTargetCache(hookTargetCache);
+
+    // hooks are resolved in background and installed once the launcher activity is constructed
+    // mapped method names are looked up by the resolver thread, reading the mapping opens the APKs
+    final HookInstaller hookInstaller = new HookInstaller(
+        lpParam.classLoader,
+        hookTargetCache,
+        NOVA_LAUNCHER_CLASS__LAUNCHER,
+        new Runnable() {
+          @Override
+          public void run() {
+            setHookTargetCache(null);
+            hookTargetCache.saveIfChangedAsync();
+          }
+        });
+
+    DiagnosticsReceiver.addReportSource(new DiagnosticsReceiver.ReportSource() {
+      @Override
+      public void appendReport(List<String> report) {
+        report.addAll(hookInstaller.getReport());
+      }
+    });
+    DiagnosticsReceiver.addReportSource(openLatencyMonitor);
+
+// ====================================================================
+
+    hookInstaller.hook(
+        HOOK_STEP__SET_LAUNCHER,
+        NOVA_LAUNCHER_CLASS__APP_SEARCH_VIEW,
+        "setLauncher",
+        NOVA_LAUNCHER_CLASS__LAUNCHER,
+        new XC_MethodHook() {
+          @Override
+          protected void afterHookedMethod(MethodHookParam methodHookParam) {
+            DiagnosticsReceiver.register(((View)methodHookParam.thisObject).getContext());
+            DiagnosticsReceiver.setViewTreeRoot((View)methodHookParam.thisObject);
+
+            RetainedObjects.track("Launcher", methodHookParam.args[0]);
+            RetainedObjects.track("AppSearchView", methodHookParam.thisObject);
+
+            settingsReader.requestRefresh();
+            OverwatchSettings settings = settingsReader.get();
+
+            // setLauncher runs on the main thread while the launcher starts
+            if(settings.isPrewarmEnabled() && Looper.myLooper() != null) {
+              PrewarmIdleHandler prewarmIdleHandler = new PrewarmIdleHandler((View)methodHookParam.thisObject);
+              prewarmIdleHandlers.put(methodHookParam.args[0], prewarmIdleHandler);
+              Looper.myQueue().addIdleHandler(prewarmIdleHandler);
+            }
+
+            if(!settings.isLayoutHooksEnabled() || !FieldAccessor.prefetch(methodHookParam.thisObject.getClass(), APP_SEARCH_VIEW__LINEAR_LAYOUT)) {
+              return;
+            }
+
+            LinearLayout mLinearLayout = APP_SEARCH_VIEW__LINEAR_LAYOUT.get(methodHookParam.thisObject);
+            mLinearLayout.setBackground(null);
+
+            applyLayoutSettings(methodHookParam.thisObject, settings);
+          }
+        });
+
+    // the settings screen is left by returning to the launcher, the next transition applies what it changed
+    hookInstaller.hook(
+        HOOK_STEP__LAUNCHER_RESUME,
+        NOVA_LAUNCHER_CLASS__LAUNCHER,
+        "onResume",
+        new XC_MethodHook() {
+          @Override
+          protected void beforeHookedMethod(MethodHookParam methodHookParam) {
+            settingsReader.requestRefresh();
+          }
+        });
+
+    // the other state of an activity is only weakly referenced, its queued prewarm would keep AppSearchView
+    hookInstaller.hook(
+        HOOK_STEP__LAUNCHER_DESTROY,
+        NOVA_LAUNCHER_CLASS__LAUNCHER,
+        "onDestroy",
+        new XC_MethodHook() {
+          @Override
+          protected void afterHookedMethod(MethodHookParam methodHookParam) {
+            PrewarmIdleHandler prewarmIdleHandler = prewarmIdleHandlers.remove(methodHookParam.thisObject);
+
+            // onDestroy runs on the main thread, like setLauncher queuing the prewarm
+            if(prewarmIdleHandler != null && Looper.myLooper() != null) {
+              Looper.myQueue().removeIdleHandler(prewarmIdleHandler);
+            }
+          }
+        });
+
+// ====================================================================
+
+    if(settings.isKeyboardHooksEnabled()) {
+      final ScopedHook toggleKeyboardHook = hookInstaller.scopedHook(
+          HOOK_STEP__TOGGLE_KEYBOARD,
+          NOVA_LAUNCHER_CLASS__APP_SEARCH_VIEW,
+          "fb",
+          XC_MethodReplacement.DO_NOTHING)
+          .mappedAs(HOOK_TARGET__APP_SEARCH_VIEW_TOGGLE_KEYBOARD).getScopedHook();
+
+      hookInstaller.hook(
+          HOOK_STEP__SHOW_APP_SEARCH_VIEW,
+          NOVA_LAUNCHER_CLASS__LAUNCHER,
+          "eN",
+          View.class, Boolean.TYPE, Integer.TYPE, Integer.TYPE,
+          new XC_MethodHook() {
+            @Override
+            protected void beforeHookedMethod(MethodHookParam methodHookParam) {
+              toggleKeyboardHook.enterScope();
+            }
+
+            @Override
+            protected void afterHookedMethod(MethodHookParam methodHookParam) {
+              toggleKeyboardHook.exitScope();
+            }
+          })
+          .mappedAs(HOOK_TARGET__LAUNCHER_SHOW_APP_SEARCH_VIEW)
+          .dependsOn(HOOK_STEP__TOGGLE_KEYBOARD);
+    }
+
+// ====================================================================
+
+    // one hook each for show and hide, the transition features are handlers switched by the settings
+    HookDispatcher showDispatcher = hookInstaller.dispatchedHook(
+        HOOK_STEP__SHOW,
+        NOVA_LAUNCHER_CLASS__APP_SEARCH_VIEW,
+        "eN",
+        Integer.TYPE, Integer.TYPE, Integer.TYPE)
+        .mappedAs(HOOK_TARGET__APP_SEARCH_VIEW_SHOW).getHookDispatcher()
+        .add(HANDLER__SETTINGS, HANDLER_ORDER__SETTINGS, new TransitionSettingsHook())
+        .add(HANDLER__JANK_MONITOR, HANDLER_ORDER__JANK_MONITOR, new JankMonitorHook(true))
+        .add(HANDLER__OPEN_LATENCY, HANDLER_ORDER__OPEN_LATENCY, new OpenLatencyHook(true));
+
+    HookDispatcher hideDispatcher = hookInstaller.dispatchedHook(
+        HOOK_STEP__HIDE,
+        NOVA_LAUNCHER_CLASS__APP_SEARCH_VIEW,
+        "eN",
+        Integer.TYPE)
+        .mappedAs(HOOK_TARGET__APP_SEARCH_VIEW_HIDE).getHookDispatcher()
+        .add(HANDLER__SETTINGS, HANDLER_ORDER__SETTINGS, new TransitionSettingsHook())
+        .add(HANDLER__JANK_MONITOR, HANDLER_ORDER__JANK_MONITOR, new JankMonitorHook(false))
+        .add(HANDLER__OPEN_LATENCY, HANDLER_ORDER__OPEN_LATENCY, new OpenLatencyHook(false));
+
+    transitionDispatchers = new HookDispatcher[] { showDispatcher, hideDispatcher };
+
+    if(settings.isAnimationHooksEnabled() || settings.isInstantTransitionEnabled()) {
+      // a scope whose AnimatorSet hook could not be installed is never forwarded to, the handler is then harmless
+      ScopedHook transitionAnimationHook = hookInstaller.scopedHook(
+          HOOK_STEP__TRANSITION_ANIMATION,
+          ANIMATOR_SET_CLASS,
+          "start",
+          new ShowHideAnimationHook()).getScopedHook();
+
+      showDispatcher
+          .add(HANDLER__ANIMATION, HANDLER_ORDER__ANIMATION, new ShowHideHook(true, false, transitionAnimationHook))
+          .add(HANDLER__INSTANT_TRANSITION, HANDLER_ORDER__INSTANT_TRANSITION, new ShowHideHook(true, true, transitionAnimationHook));
+      hideDispatcher
+          .add(HANDLER__ANIMATION, HANDLER_ORDER__ANIMATION, new ShowHideHook(false, false, transitionAnimationHook))
+          .add(HANDLER__INSTANT_TRANSITION, HANDLER_ORDER__INSTANT_TRANSITION, new ShowHideHook(false, true, transitionAnimationHook));
+      animationHandlersAdded = true;
+    }
+
+    applyTransitionSettings(settings);
+
+    hookInstaller.start();
+  }
+
+}
@@ -0,0 +1,236 @@
+package org.bambi.overwatch.xposed.settings;
+
+import android.content.SharedPreferences;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Immutable snapshot of the module settings. The settings screen writes it as a small binary file which the hooked
+ * process reads, see {@link SettingsReader}.
+ */
+public final class OverwatchSettings {
+
+  public static final String KEY_KEYBOARD_HOOKS_ENABLED = "keyboard_hooks_enabled";
+  public static final String KEY_ANIMATION_HOOKS_ENABLED = "animation_hooks_enabled";
+  public static final String KEY_LAYOUT_HOOKS_ENABLED = "layout_hooks_enabled";
+  public static final String KEY_INSTANT_TRANSITION_ENABLED = "instant_transition_enabled";
+  public static final String KEY_JANK_MONITOR_ENABLED = "jank_monitor_enabled";
+  public static final String KEY_PREWARM_ENABLED = "prewarm_enabled";
+  public static final String KEY_APP_SEARCH_VIEW_BACKGROUND_COLOR = "app_search_view_background_color";
+  public static final String KEY_SEARCHBAR_TOP_MARGIN = "searchbar_top_margin";
+  public static final String KEY_CONTENT_TOP_MARGIN = "content_top_margin";
+
+  public static final OverwatchSettings DEFAULTS = new OverwatchSettings(
+      0, true, true, true, false, false, true, 0xE0080808, 200, 70);
+
+  private static final int FILE_MAGIC = 0x4F575354;
+  private static final int FILE_VERSION = 1;
+
+  private static final int FLAG_KEYBOARD_HOOKS_ENABLED = 0x01;
+  private static final int FLAG_ANIMATION_HOOKS_ENABLED = 0x02;
+  private static final int FLAG_LAYOUT_HOOKS_ENABLED = 0x04;
+  private static final int FLAG_INSTANT_TRANSITION_ENABLED = 0x08;
+  private static final int FLAG_JANK_MONITOR_ENABLED = 0x10;
+  // 0x20 is left unset, files of earlier versions may have it
+  private static final int FLAG_PREWARM_ENABLED = 0x40;
+
+  private final int generation;
+
+  private final boolean keyboardHooksEnabled;
+  private final boolean animationHooksEnabled;
+  private final boolean layoutHooksEnabled;
+  private final boolean instantTransitionEnabled;
+  private final boolean jankMonitorEnabled;
+  private final boolean prewarmEnabled;
+
+  private final int appSearchViewBackgroundColor;
+  private final int searchbarTopMargin;
+  private final int contentTopMargin;
+
+
+  private OverwatchSettings(
+      int generation,
+      boolean keyboardHooksEnabled, boolean animationHooksEnabled, boolean layoutHooksEnabled,
+      boolean instantTransitionEnabled, boolean jankMonitorEnabled, boolean prewarmEnabled,
+      int appSearchViewBackgroundColor, int searchbarTopMargin, int contentTopMargin) {
+
+    this.generation = generation;
+    this.keyboardHooksEnabled = keyboardHooksEnabled;
+    this.animationHooksEnabled = animationHooksEnabled;
+    this.layoutHooksEnabled = layoutHooksEnabled;
+    this.instantTransitionEnabled = instantTransitionEnabled;
+    this.jankMonitorEnabled = jankMonitorEnabled;
+    this.prewarmEnabled = prewarmEnabled;
+    this.appSearchViewBackgroundColor = appSearchViewBackgroundColor;
+    this.searchbarTopMargin = searchbarTopMargin;
+    this.contentTopMargin = contentTopMargin;
+  }
+
+
+  /**
+   * Number of times the settings were written, increases with every change.
+   */
+  public int getGeneration() {
+    return generation;
+  }
+
+
+  /**
+   * Suppresses the keyboard toggle while Launcher opens the app search.
+   */
+  public boolean isKeyboardHooksEnabled() {
+    return keyboardHooksEnabled;
+  }
+
+
+  public boolean isAnimationHooksEnabled() {
+    return animationHooksEnabled;
+  }
+
+
+  public boolean isLayoutHooksEnabled() {
+    return layoutHooksEnabled;
+  }
+
+
+  public boolean isInstantTransitionEnabled() {
+    return instantTransitionEnabled;
+  }
+
+
+  /**
+   * Counts the slow frames of the app search transitions and times its opens, for the diagnostics report.
+   */
+  public boolean isJankMonitorEnabled() {
+    return jankMonitorEnabled;
+  }
+
+
+  /**
+   * Runs the first use setup of AppSearchView once the launcher is idle after its start.
+   */
+  public boolean isPrewarmEnabled() {
+    return prewarmEnabled;
+  }
+
+
+  public int getAppSearchViewBackgroundColor() {
+    return appSearchViewBackgroundColor;
+  }
+
+
+  public int getSearchbarTopMargin() {
+    return searchbarTopMargin;
+  }
+
+
+  public int getContentTopMargin() {
+    return contentTopMargin;
+  }
+
+
+  /**
+   * Builds the settings from the preferences of the settings screen, unparsable values fall back to the defaults.
+   */
+  static OverwatchSettings fromPreferences(SharedPreferences preferences, int generation) {
+    return new OverwatchSettings(
+        generation,
+        preferences.getBoolean(KEY_KEYBOARD_HOOKS_ENABLED, DEFAULTS.keyboardHooksEnabled),
+        preferences.getBoolean(KEY_ANIMATION_HOOKS_ENABLED, DEFAULTS.animationHooksEnabled),
+        preferences.getBoolean(KEY_LAYOUT_HOOKS_ENABLED, DEFAULTS.layoutHooksEnabled),
+        preferences.getBoolean(KEY_INSTANT_TRANSITION_ENABLED, DEFAULTS.instantTransitionEnabled),
+        preferences.getBoolean(KEY_JANK_MONITOR_ENABLED, DEFAULTS.jankMonitorEnabled),
+        preferences.getBoolean(KEY_PREWARM_ENABLED, DEFAULTS.prewarmEnabled),
+        parseInt(preferences.getString(KEY_APP_SEARCH_VIEW_BACKGROUND_COLOR, null), 16, DEFAULTS.appSearchViewBackgroundColor),
+        parseInt(preferences.getString(KEY_SEARCHBAR_TOP_MARGIN, null), 10, DEFAULTS.searchbarTopMargin),
+        parseInt(preferences.getString(KEY_CONTENT_TOP_MARGIN, null), 10, DEFAULTS.contentTopMargin));
+  }
+
+
+  /**
+   * Returns whether both settings have the same values, whatever their generation.
+   */
+  boolean hasSameValues(OverwatchSettings other) {
+    return keyboardHooksEnabled == other.keyboardHooksEnabled
+        && animationHooksEnabled == other.animationHooksEnabled
+        && layoutHooksEnabled == other.layoutHooksEnabled
+        && instantTransitionEnabled == other.instantTransitionEnabled
+        && jankMonitorEnabled == other.jankMonitorEnabled
+        && prewarmEnabled == other.prewarmEnabled
+        && appSearchViewBackgroundColor == other.appSearchViewBackgroundColor
+        && searchbarTopMargin == other.searchbarTopMargin
+        && contentTopMargin == other.contentTopMargin;
+  }
+
+
+  private static int parseInt(String value, int radix, int defaultValue) {
+    if(value == null) {
+      return defaultValue;
+    }
+
+    try {
+      // parsed as long, so colors with alpha above 0x7F fit
+      return (int)Long.parseLong(value.trim(), radix);
+    }
+    catch(NumberFormatException exception) {
+      return defaultValue;
+    }
+  }
+
+
+  void writeTo(DataOutput output) throws IOException {
+    int flags = 0;
+
+    if(keyboardHooksEnabled) {
+      flags |= FLAG_KEYBOARD_HOOKS_ENABLED;
+    }
+    if(animationHooksEnabled) {
+      flags |= FLAG_ANIMATION_HOOKS_ENABLED;
+    }
+    if(layoutHooksEnabled) {
+      flags |= FLAG_LAYOUT_HOOKS_ENABLED;
+    }
+    if(instantTransitionEnabled) {
+      flags |= FLAG_INSTANT_TRANSITION_ENABLED;
+    }
+    if(jankMonitorEnabled) {
+      flags |= FLAG_JANK_MONITOR_ENABLED;
+    }
+    if(prewarmEnabled) {
+      flags |= FLAG_PREWARM_ENABLED;
+    }
+
+    output.writeInt(FILE_MAGIC);
+    output.writeInt(FILE_VERSION);
+    output.writeInt(generation);
+    output.writeInt(flags);
+    output.writeInt(appSearchViewBackgroundColor);
+    output.writeInt(searchbarTopMargin);
+    output.writeInt(contentTopMargin);
+  }
+
+
+  static OverwatchSettings readFrom(DataInput input) throws IOException {
+    if(input.readInt() != FILE_MAGIC || input.readInt() != FILE_VERSION) {
+      throw new IOException("Unsupported settings file");
+    }
+
+    int generation = input.readInt();
+    int flags = input.readInt();
+
+    return new OverwatchSettings(
+        generation,
+        (flags & FLAG_KEYBOARD_HOOKS_ENABLED) != 0,
+        (flags & FLAG_ANIMATION_HOOKS_ENABLED) != 0,
+        (flags & FLAG_LAYOUT_HOOKS_ENABLED) != 0,
+        (flags & FLAG_INSTANT_TRANSITION_ENABLED) != 0,
+        (flags & FLAG_JANK_MONITOR_ENABLED) != 0,
+        (flags & FLAG_PREWARM_ENABLED) != 0,
+        input.readInt(),
+        input.readInt(),
+        input.readInt());
+  }
+
+}
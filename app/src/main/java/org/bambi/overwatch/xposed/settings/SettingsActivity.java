@@ -0,0 +1,69 @@
+package org.bambi.overwatch.xposed.settings;
+
+import android.content.SharedPreferences;
+import android.os.Bundle;
+import android.preference.PreferenceActivity;
+import android.preference.PreferenceFragment;
+import android.util.Log;
+
+import java.io.IOException;
+
+import org.bambi.overwatch.xposed.R;
+
+/**
+ * Settings screen of the module, shown by the Xposed installer. Every change is written for the hooked process
+ * right away. Nova applies the transition, appearance and diagnostics settings with its next app search transition,
+ * the others after a launcher restart, as their summaries say.
+ */
+public class SettingsActivity extends PreferenceActivity {
+
+  private static final String LOG_TAG = "OverwatchSettings";
+
+
+  public static class SettingsFragment extends PreferenceFragment implements SharedPreferences.OnSharedPreferenceChangeListener {
+
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+      super.onCreate(savedInstanceState);
+
+      addPreferencesFromResource(R.xml.settings);
+      // writes the defaults on the first open, unchanged settings are left as they are
+      write(getPreferenceManager().getSharedPreferences());
+    }
+
+    @Override
+    public void onResume() {
+      super.onResume();
+      getPreferenceManager().getSharedPreferences().registerOnSharedPreferenceChangeListener(this);
+    }
+
+    @Override
+    public void onPause() {
+      getPreferenceManager().getSharedPreferences().unregisterOnSharedPreferenceChangeListener(this);
+      super.onPause();
+    }
+
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences preferences, String key) {
+      write(preferences);
+    }
+
+    private void write(SharedPreferences preferences) {
+      try {
+        SettingsWriter.write(getActivity(), preferences);
+      }
+      catch(IOException exception) {
+        Log.e(LOG_TAG, "Failed to write settings", exception);
+      }
+    }
+  }
+
+
+  @Override
+  protected void onCreate(Bundle savedInstanceState) {
+    super.onCreate(savedInstanceState);
+
+    getFragmentManager().beginTransaction().replace(android.R.id.content, new SettingsFragment()).commit();
+  }
+
+}
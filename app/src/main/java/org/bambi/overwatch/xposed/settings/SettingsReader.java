@@ -0,0 +1,156 @@
+package org.bambi.overwatch.xposed.settings;
+
+import static org.bambi.overwatch.xposed.util.XposedUtils.log;
+import static org.bambi.overwatch.xposed.util.XposedUtils.logException;
+
+import android.content.pm.ApplicationInfo;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+import org.bambi.overwatch.xposed.BuildConfig;
+
+/**
+ * Settings of the module as seen by the hooked process. {@link #get()} returns the current immutable snapshot
+ * without I/O or locking. {@link #requestRefresh()} wakes a background thread which compares the modification time
+ * and size of the settings file and only reads it (a few dozen bytes) when they changed; requests are rate limited,
+ * so the launcher starting and resuming at once reads the file once.
+ */
+public class SettingsReader {
+
+  private static final long MIN_REFRESH_INTERVAL_NANOS = 2000000000L;
+
+  private final File settingsFile;
+
+  private volatile OverwatchSettings settings = OverwatchSettings.DEFAULTS;
+
+  private long settingsFileLastModified;
+  private long settingsFileLength;
+
+  private volatile long lastRefreshRequestNanos;
+  private volatile boolean refreshRequested;
+  private volatile Thread refreshThread;
+
+
+  private SettingsReader(File settingsFile) {
+    this.settingsFile = settingsFile;
+  }
+
+
+  /**
+   * Reads the settings written by the module's settings screen, defaults are used until there are any.
+   */
+  public static SettingsReader load(ApplicationInfo applicationInfo) {
+    // data directories of all packages of a user share the parent directory
+    File moduleFilesDirectory = new File(new File(applicationInfo.dataDir).getParentFile(), BuildConfig.APPLICATION_ID + "/files");
+
+    SettingsReader settingsReader = new SettingsReader(new File(moduleFilesDirectory, SettingsWriter.SETTINGS_FILE_NAME));
+    settingsReader.refresh();
+
+    return settingsReader;
+  }
+
+
+  public OverwatchSettings get() {
+    return settings;
+  }
+
+
+  public void requestRefresh() {
+    long now = System.nanoTime();
+
+    if(now - lastRefreshRequestNanos < MIN_REFRESH_INTERVAL_NANOS) {
+      return;
+    }
+
+    lastRefreshRequestNanos = now;
+    refreshRequested = true;
+
+    Thread thread = refreshThread;
+
+    if(thread == null) {
+      startRefreshThread();
+    }
+    else {
+      LockSupport.unpark(thread);
+    }
+  }
+
+
+  private synchronized void startRefreshThread() {
+    if(refreshThread != null) {
+      return;
+    }
+
+    Thread thread = new Thread("Overwatch-Settings") {
+      @Override
+      public void run() {
+        while(true) {
+          if(refreshRequested) {
+            refreshRequested = false;
+            refresh();
+          }
+          else {
+            LockSupport.park(SettingsReader.this);
+          }
+        }
+      }
+    };
+
+    thread.setDaemon(true);
+    thread.setPriority(Thread.MIN_PRIORITY);
+    refreshThread = thread;
+    thread.start();
+  }
+
+
+  /**
+   * Called on the loading thread first, on the refresh thread afterwards. The file identity is only remembered once
+   * it was parsed, a file read while being written is read again with the next refresh.
+   */
+  private void refresh() {
+    long lastModified = settingsFile.lastModified();
+    long length = settingsFile.length();
+
+    if(lastModified == 0L || (lastModified == settingsFileLastModified && length == settingsFileLength)) {
+      return;
+    }
+
+    try {
+      byte[] bytes = new byte[(int)length];
+
+      try(FileInputStream input = new FileInputStream(settingsFile)) {
+        int offset = 0;
+        int read;
+
+        while(offset < bytes.length && (read = input.read(bytes, offset, bytes.length - offset)) > 0) {
+          offset += read;
+        }
+
+        if(offset < bytes.length) {
+          throw new EOFException("Settings file truncated to " + offset + " of " + length + " bytes");
+        }
+      }
+
+      OverwatchSettings newSettings = OverwatchSettings.readFrom(new DataInputStream(new ByteArrayInputStream(bytes)));
+
+      settingsFileLastModified = lastModified;
+      settingsFileLength = length;
+
+      if(newSettings.getGeneration() != settings.getGeneration()) {
+        settings = newSettings;
+        log("Settings generation %d loaded", newSettings.getGeneration());
+      }
+    }
+    catch(IOException exception) {
+      log("Failed to read settings %s", settingsFile);
+      logException(exception);
+    }
+  }
+
+}
@@ -0,0 +1,73 @@
+package org.bambi.overwatch.xposed.settings;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes the settings of the settings screen to the file read by {@link SettingsReader} in the hooked process.
+ * The file and its directories are made world readable, the hooked process runs as another user. Unchanged
+ * settings are not written again, so opening the settings screen does not make the hooked process reload them.
+ */
+final class SettingsWriter {
+
+  static final String SETTINGS_FILE_NAME = "settings.bin";
+
+
+  private SettingsWriter() {
+  }
+
+
+  static OverwatchSettings write(Context context, SharedPreferences preferences) throws IOException {
+    File filesDirectory = context.getFilesDir();
+    File settingsFile = new File(filesDirectory, SETTINGS_FILE_NAME);
+    File temporaryFile = new File(filesDirectory, SETTINGS_FILE_NAME + ".tmp");
+
+    OverwatchSettings writtenSettings = read(settingsFile);
+    OverwatchSettings settings = OverwatchSettings.fromPreferences(
+        preferences, writtenSettings != null ? writtenSettings.getGeneration() + 1 : 1);
+
+    if(writtenSettings != null && writtenSettings.hasSameValues(settings)) {
+      return writtenSettings;
+    }
+
+    try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+      settings.writeTo(output);
+    }
+
+    if(!temporaryFile.renameTo(settingsFile)) {
+      throw new IOException("Cannot rename " + temporaryFile + " to " + settingsFile);
+    }
+
+    settingsFile.setReadable(true, false);
+    filesDirectory.setExecutable(true, false);
+    context.getDataDir().setExecutable(true, false);
+
+    return settings;
+  }
+
+
+  /**
+   * Returns the written settings, {@code null} when there are none or they cannot be read.
+   */
+  private static OverwatchSettings read(File settingsFile) {
+    if(!settingsFile.isFile()) {
+      return null;
+    }
+
+    try(DataInputStream input = new DataInputStream(new FileInputStream(settingsFile))) {
+      return OverwatchSettings.readFrom(input);
+    }
+    catch(IOException exception) {
+      return null;
+    }
+  }
+
+}
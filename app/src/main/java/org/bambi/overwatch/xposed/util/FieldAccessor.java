@@ -0,0 +1,139 @@
+package org.bambi.overwatch.xposed.util;
+
+import static de.robv.android.xposed.XposedHelpers.findField;
+import static org.bambi.overwatch.xposed.util.XposedUtils.log;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Typed accessor of a field of launcher internals, replacement for {@code XposedHelpers.getObjectField} and friends.
+ * The {@link Field} is resolved once per receiver class; the last used class is checked first, so a hook reading
+ * the same class over and over pays one reference comparison on top of the field read.
+ *
+ * <p>Accessors are meant to be kept in static final fields. Hooks can {@link #prefetch} all the fields they need
+ * up front, missing fields are reported there once per class.
+ */
+public final class FieldAccessor {
+
+  private static final class Resolution {
+    final Class<?> clazz;
+    final Field field;
+
+    Resolution(Class<?> clazz, Field field) {
+      this.clazz = clazz;
+      this.field = field;
+    }
+  }
+
+
+  private static final Set<String> reportedMissingFields = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  private final String fieldName;
+
+  private volatile Resolution lastResolution;
+  private final ConcurrentHashMap<Class<?>, Field> resolvedFields = new ConcurrentHashMap<>();
+
+
+  private FieldAccessor(String fieldName) {
+    this.fieldName = fieldName;
+  }
+
+
+  public static FieldAccessor of(String fieldName) {
+    return new FieldAccessor(fieldName);
+  }
+
+
+  public String getFieldName() {
+    return fieldName;
+  }
+
+
+  /**
+   * Resolves all given fields for the class, returns {@code false} and reports the missing ones if any is missing.
+   */
+  public static boolean prefetch(Class<?> clazz, FieldAccessor... fieldAccessors) {
+    boolean allResolved = true;
+
+    for(FieldAccessor fieldAccessor : fieldAccessors) {
+      try {
+        fieldAccessor.resolve(clazz);
+      }
+      catch(NoSuchFieldError error) {
+        allResolved = false;
+
+        if(reportedMissingFields.add(clazz.getName() + "#" + fieldAccessor.fieldName)) {
+          log("Field %s not found in %s", fieldAccessor.fieldName, clazz.getName());
+        }
+      }
+    }
+
+    return allResolved;
+  }
+
+
+  @SuppressWarnings("unchecked")
+  public <T> T get(Object target) {
+    try {
+      return (T)resolve(target.getClass()).get(target);
+    }
+    catch(IllegalAccessException exception) {
+      throw new IllegalAccessError(exception.getMessage());
+    }
+  }
+
+
+  public int getInt(Object target) {
+    try {
+      return resolve(target.getClass()).getInt(target);
+    }
+    catch(IllegalAccessException exception) {
+      throw new IllegalAccessError(exception.getMessage());
+    }
+  }
+
+
+  public boolean getBoolean(Object target) {
+    try {
+      return resolve(target.getClass()).getBoolean(target);
+    }
+    catch(IllegalAccessException exception) {
+      throw new IllegalAccessError(exception.getMessage());
+    }
+  }
+
+
+  public void set(Object target, Object value) {
+    try {
+      resolve(target.getClass()).set(target, value);
+    }
+    catch(IllegalAccessException exception) {
+      throw new IllegalAccessError(exception.getMessage());
+    }
+  }
+
+
+  private Field resolve(Class<?> clazz) {
+    Resolution resolution = lastResolution;
+
+    if(resolution != null && resolution.clazz == clazz) {
+      return resolution.field;
+    }
+
+    Field field = resolvedFields.get(clazz);
+
+    if(field == null) {
+      // findField searches the superclasses and makes the field accessible, throws NoSuchFieldError if missing
+      field = findField(clazz, fieldName);
+      resolvedFields.put(clazz, field);
+    }
+
+    lastResolution = new Resolution(clazz, field);
+
+    return field;
+  }
+
+}
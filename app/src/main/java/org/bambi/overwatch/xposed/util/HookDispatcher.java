@@ -0,0 +1,257 @@
+package org.bambi.overwatch.xposed.util;
+
+import static org.bambi.overwatch.xposed.util.XposedUtils.log;
+import static org.bambi.overwatch.xposed.util.XposedUtils.logException;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.robv.android.xposed.XC_MethodHook;
+
+/**
+ * Single hook of a method fanning out to the handlers of the features using it, see
+ * {@code XposedUtils.getHookDispatcher}. XposedBridge walks one callback per call however many features hook the
+ * method, and features are switched with {@link #setEnabled} without unhooking or rehooking.
+ *
+ * <p>The enabled handlers are kept as a copy-on-write array sorted by order, a call runs the before parts in order
+ * and the after parts in reverse order over the array it started with, so a switch takes effect with the next call.
+ * Unlike separate hooks, a handler returning early does not skip the before parts of the handlers after it, so
+ * handlers replacing the method go last. A throwing handler is logged once and the others still run.
+ */
+public class HookDispatcher extends XC_MethodHook {
+
+  private static final Handler[] NO_HANDLERS = new Handler[0];
+
+
+  private static final class Handler {
+    final String name;
+    final int order;
+    final XC_MethodHook callback;
+    boolean enabled = true;
+    volatile boolean failed;
+
+    Handler(String name, int order, XC_MethodHook callback) {
+      this.name = name;
+      this.order = order;
+      this.callback = callback;
+    }
+  }
+
+
+  /**
+   * Arrays of the calls running on a thread, a call can re-enter the hooked method.
+   */
+  private static final class CallStack {
+    Handler[][] calls = new Handler[4][];
+    int depth;
+  }
+
+
+  private final String name;
+
+  // all handlers by order, guarded by itself
+  private final List<Handler> handlers = new ArrayList<>();
+  private volatile Handler[] enabledHandlers = NO_HANDLERS;
+
+  private final ThreadLocal<CallStack> callStacks = new ThreadLocal<CallStack>() {
+    @Override
+    protected CallStack initialValue() {
+      return new CallStack();
+    }
+  };
+
+  private XC_MethodHook.Unhook unhook;
+
+
+  public HookDispatcher(String name) {
+    this.name = name;
+  }
+
+
+  public String getName() {
+    return name;
+  }
+
+
+  /**
+   * Adds an enabled handler, handlers of the same order run in the order they were added.
+   */
+  public HookDispatcher add(String name, int order, XC_MethodHook callback) {
+    synchronized(handlers) {
+      int index = 0;
+
+      for(Handler handler : handlers) {
+        if(handler.name.equals(name)) {
+          throw new IllegalArgumentException("Duplicate handler " + name + " of " + this.name);
+        }
+
+        if(handler.order <= order) {
+          index++;
+        }
+      }
+
+      // instrumented per handler, a disabled handler costs nothing
+      handlers.add(index, new Handler(name, order, HookStatistics.measure(this.name + " " + name, callback)));
+      publish();
+    }
+
+    return this;
+  }
+
+
+  public boolean remove(String name) {
+    synchronized(handlers) {
+      Handler handler = find(name);
+
+      if(handler == null) {
+        return false;
+      }
+
+      handlers.remove(handler);
+      publish();
+
+      return true;
+    }
+  }
+
+
+  public void setEnabled(String name, boolean enabled) {
+    synchronized(handlers) {
+      Handler handler = find(name);
+
+      if(handler == null) {
+        throw new IllegalArgumentException("Unknown handler " + name + " of " + this.name);
+      }
+
+      if(handler.enabled != enabled) {
+        handler.enabled = enabled;
+        publish();
+      }
+    }
+  }
+
+
+  public boolean isEnabled(String name) {
+    synchronized(handlers) {
+      Handler handler = find(name);
+      return handler != null && handler.enabled;
+    }
+  }
+
+
+  private Handler find(String name) {
+    for(Handler handler : handlers) {
+      if(handler.name.equals(name)) {
+        return handler;
+      }
+    }
+
+    return null;
+  }
+
+
+  private void publish() {
+    List<Handler> enabled = new ArrayList<>(handlers.size());
+
+    for(Handler handler : handlers) {
+      if(handler.enabled) {
+        enabled.add(handler);
+      }
+    }
+
+    enabledHandlers = enabled.toArray(new Handler[enabled.size()]);
+  }
+
+
+  /**
+   * Hooks the dispatcher on first use only, returns the unhook of the first successful call.
+   */
+  synchronized XC_MethodHook.Unhook hookOnce(Method method) {
+    if(unhook == null) {
+      unhook = XposedUtils.hookMethod_failSafe(method, this);
+    }
+
+    return unhook;
+  }
+
+
+  @Override
+  protected void beforeHookedMethod(MethodHookParam param) {
+    Handler[] call = enabledHandlers;
+    CallStack callStack = callStacks.get();
+
+    if(callStack.depth == callStack.calls.length) {
+      callStack.calls = Arrays.copyOf(callStack.calls, callStack.depth * 2);
+    }
+
+    // pushed before any handler runs, XposedBridge calls the after part whatever the before parts do
+    callStack.calls[callStack.depth++] = call;
+
+    for(Handler handler : call) {
+      try {
+        handler.callback.callBeforeHookedMethod(param);
+      }
+      catch(Throwable exception) {
+        onFailure(handler, exception);
+      }
+    }
+  }
+
+
+  @Override
+  protected void afterHookedMethod(MethodHookParam param) {
+    CallStack callStack = callStacks.get();
+
+    if(callStack.depth == 0) {
+      return;
+    }
+
+    Handler[] call = callStack.calls[--callStack.depth];
+    callStack.calls[callStack.depth] = null;
+
+    for(int i = call.length - 1; i >= 0; i--) {
+      Object result = param.getResult();
+      Throwable throwable = param.getThrowable();
+
+      try {
+        call[i].callback.callAfterHookedMethod(param);
+      }
+      catch(Throwable exception) {
+        onFailure(call[i], exception);
+
+        // like XposedBridge, a failing after part leaves the result as it was
+        if(throwable == null) {
+          param.setResult(result);
+        }
+        else {
+          param.setThrowable(throwable);
+        }
+      }
+    }
+  }
+
+
+  private void onFailure(Handler handler, Throwable exception) {
+    if(!handler.failed) {
+      handler.failed = true;
+      log("Hook handler %s of %s failed", handler.name, name);
+      logException(exception);
+    }
+  }
+
+
+  public List<String> getReport() {
+    List<String> report = new ArrayList<>();
+
+    synchronized(handlers) {
+      for(Handler handler : handlers) {
+        report.add(String.format("    %s %s (%d)%s", handler.enabled ? "+" : "-", handler.name, handler.order, handler.failed ? " failed" : ""));
+      }
+    }
+
+    return report;
+  }
+
+}
@@ -0,0 +1,134 @@
+package org.bambi.overwatch.xposed.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Negative cache of the hook targets the {@link XposedUtils} fail-safe helpers failed to find or hook, keyed like
+ * the {@link HookTargetCache}. A known broken target is skipped with a single map lookup, and a hook group (the
+ * hooked class) is disabled entirely once {@link #setMaxGroupFailures max group failures} of its targets failed,
+ * which usually means the class was reshuffled by an update of the hooked app.
+ */
+public final class HookFailures {
+
+  public static final int DEFAULT_MAX_GROUP_FAILURES = 3;
+
+  private static final class Failure {
+    final String group;
+    final boolean groupDisabled;
+    final AtomicInteger attempts = new AtomicInteger(1);
+
+    Failure(String group, boolean groupDisabled) {
+      this.group = group;
+      this.groupDisabled = groupDisabled;
+    }
+  }
+
+
+  private static volatile int maxGroupFailures = DEFAULT_MAX_GROUP_FAILURES;
+
+  private static final ConcurrentHashMap<String, Failure> failures = new ConcurrentHashMap<>();
+  private static final ConcurrentHashMap<String, AtomicInteger> groupFailures = new ConcurrentHashMap<>();
+
+
+  private HookFailures() {
+  }
+
+
+  /**
+   * Sets the number of failed targets after which the other targets of their group are skipped as well, only
+   * groups failing from now on are affected.
+   */
+  public static void setMaxGroupFailures(int maxGroupFailures) {
+    HookFailures.maxGroupFailures = maxGroupFailures;
+  }
+
+
+  /**
+   * Returns {@code true} when the target failed before or its group is disabled, counting the attempt.
+   */
+  static boolean isSkipped(String lookupKey, String group) {
+    Failure failure = failures.get(lookupKey);
+
+    if(failure != null) {
+      int attempts = failure.attempts.incrementAndGet();
+
+      if(OverwatchLog.isLoggable(OverwatchLog.DEBUG)) {
+        OverwatchLog.log(OverwatchLog.DEBUG, "Skipping hook %s, attempt %d", lookupKey, attempts);
+      }
+
+      return true;
+    }
+
+    AtomicInteger groupFailureCount = groupFailures.get(group);
+
+    if(groupFailureCount == null || groupFailureCount.get() < maxGroupFailures) {
+      return false;
+    }
+
+    if(failures.putIfAbsent(lookupKey, new Failure(group, true)) == null) {
+      OverwatchLog.log(OverwatchLog.WARN, "Skipping hook %s, hook group %s is disabled", lookupKey, group);
+    }
+
+    return true;
+  }
+
+
+  /**
+   * Records a failed target, returns {@code true} the first time it fails so the caller logs the failure only once.
+   */
+  static boolean recordFailure(String lookupKey, String group) {
+    Failure failure = failures.putIfAbsent(lookupKey, new Failure(group, false));
+
+    if(failure != null) {
+      failure.attempts.incrementAndGet();
+      return false;
+    }
+
+    AtomicInteger groupFailureCount = groupFailures.get(group);
+
+    if(groupFailureCount == null) {
+      groupFailures.putIfAbsent(group, new AtomicInteger());
+      groupFailureCount = groupFailures.get(group);
+    }
+
+    if(groupFailureCount.incrementAndGet() == maxGroupFailures) {
+      OverwatchLog.log(OverwatchLog.WARN, "Hook group %s disabled after %d failures", group, maxGroupFailures);
+    }
+
+    return true;
+  }
+
+
+  /**
+   * Forgets all failures, e.g. after the hook targets were remapped.
+   */
+  public static void reset() {
+    failures.clear();
+    groupFailures.clear();
+  }
+
+
+  /**
+   * One line per failed target: its group and how often it was attempted.
+   */
+  public static List<String> getReport() {
+    List<String> report = new ArrayList<>();
+
+    for(Map.Entry<String, Failure> entry : failures.entrySet()) {
+      Failure failure = entry.getValue();
+
+      report.add(String.format("%s [%s]: attempts=%d%s",
+          entry.getKey(),
+          failure.group,
+          failure.attempts.get(),
+          failure.groupDisabled ? ", group disabled" : ""));
+    }
+
+    return report;
+  }
+
+}
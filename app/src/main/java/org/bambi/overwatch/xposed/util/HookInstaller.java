@@ -0,0 +1,374 @@
+package org.bambi.overwatch.xposed.util;
+
+import static de.robv.android.xposed.XposedHelpers.findClass;
+import static org.bambi.overwatch.xposed.util.XposedUtils.findBestMethod_failSafe;
+import static org.bambi.overwatch.xposed.util.XposedUtils.hookMethod_failSafe;
+import static org.bambi.overwatch.xposed.util.XposedUtils.log;
+import static org.bambi.overwatch.xposed.util.XposedUtils.logException;
+import static org.bambi.overwatch.xposed.util.XposedUtils.unhookMethod_failSafe;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import de.robv.android.xposed.XC_MethodHook;
+import de.robv.android.xposed.XposedBridge;
+
+/**
+ * Installs the hooks of a package in stages to keep them off its cold start path:
+ * <ol>
+ *   <li>{@link #hook}, {@link #scopedHook} and {@link #dispatchedHook} only register steps, nothing is resolved in {@code handleLoadPackage},</li>
+ *   <li>{@link #start()} resolves all classes and methods on a background thread,</li>
+ *   <li>the first constructor call of the gate class installs all hooks on the constructing thread, waiting for the
+ *   background resolution if it is not done yet.</li>
+ * </ol>
+ * Obfuscated method names of {@link Step#mappedAs mapped} steps are looked up on the background thread as well.
+ * Hooks are installed in dependency order, a step whose dependency could not be installed is skipped. Each hooked
+ * class of a step has to be first used after the gate class is constructed, otherwise calls made before are missed.
+ */
+public class HookInstaller {
+
+  private static final long RESOLVE_TIMEOUT_MILLIS = 1000L;
+
+
+  public final class Step {
+    private final String id;
+    private final String clazzName;
+    private final String methodName;
+    private final Object[] parameterTypesAndCallback;
+    private final ScopedHook scopedHook;
+    private final List<Step> dependencies = new ArrayList<>();
+    private String targetId;
+
+    // guarded by the step, the resolver and the installing thread can both resolve it
+    private boolean resolved;
+    private volatile Method method;
+    private XC_MethodHook.Unhook unhook;
+    private boolean visited;
+
+    private Step(String id, String clazzName, String methodName, ScopedHook scopedHook, Object... parameterTypesAndCallback) {
+      this.id = id;
+      this.clazzName = clazzName;
+      this.methodName = methodName;
+      this.scopedHook = scopedHook;
+      this.parameterTypesAndCallback = parameterTypesAndCallback;
+    }
+
+    /**
+     * Installs this step only after the given steps were installed successfully.
+     */
+    public Step dependsOn(String... stepIds) {
+      for(String stepId : stepIds) {
+        Step dependency = steps.get(stepId);
+
+        if(dependency == null) {
+          throw new IllegalArgumentException("Unknown hook installer step " + stepId);
+        }
+
+        dependencies.add(dependency);
+      }
+
+      return this;
+    }
+
+    /**
+     * Hooks the method the target is mapped to in the hooked APK, see {@link HookTargetCache#getMethodName}. The
+     * registered method name is the default, a step without one is not hooked when the target is not mapped.
+     */
+    public Step mappedAs(String targetId) {
+      this.targetId = targetId;
+      return this;
+    }
+
+    /**
+     * Returns the scope of a {@link #scopedHook} step, it only forwards once the step has been installed.
+     */
+    public ScopedHook getScopedHook() {
+      return scopedHook;
+    }
+
+    /**
+     * Returns the dispatcher of a {@link #dispatchedHook} step, its handlers can be added and switched at any time.
+     */
+    public HookDispatcher getHookDispatcher() {
+      XC_MethodHook callback = XposedUtils.getCallback(parameterTypesAndCallback);
+      return callback instanceof HookDispatcher ? (HookDispatcher)callback : null;
+    }
+
+    private synchronized void resolve(ClassLoader classLoader) {
+      if(resolved) {
+        return;
+      }
+
+      // the mapping reads the module and hooked APKs, the first lookup must not run in handleLoadPackage
+      String resolvedMethodName = targetId != null && hookTargetCache != null
+          ? hookTargetCache.getMethodName(targetId, methodName)
+          : methodName;
+
+      if(resolvedMethodName != null) {
+        method = findBestMethod_failSafe(clazzName, classLoader, resolvedMethodName, parameterTypesAndCallback);
+      }
+      else {
+        log("Hook target %s is not mapped, skipping hook %s", targetId, id);
+      }
+
+      resolved = true;
+    }
+  }
+
+
+  // released once the hooks are installed, it is the hooked app's class loader
+  private volatile ClassLoader classLoader;
+  private final HookTargetCache hookTargetCache;
+  private final String gateClazzName;
+  private final Runnable onInstalled;
+
+  private final Map<String, Step> steps = new LinkedHashMap<>();
+
+  private final CountDownLatch resolvedLatch = new CountDownLatch(1);
+  private final AtomicBoolean installed = new AtomicBoolean();
+  private volatile boolean resolveTimedOut;
+  private Set<XC_MethodHook.Unhook> gateUnhooks = Collections.emptySet();
+
+  private volatile long startNanos;
+  private volatile long resolveNanos = -1L;
+  private volatile long gateDelayNanos = -1L;
+  private volatile long waitNanos = -1L;
+  private volatile long installNanos = -1L;
+  private volatile int installedCount;
+  private volatile int failedCount;
+
+
+  /**
+   * @param hookTargetCache maps the targets of {@link Step#mappedAs mapped} steps, may be {@code null}
+   * @param gateClazzName class whose first constructor call installs the hooks
+   * @param onInstalled called on the installing thread once all steps were processed, may be {@code null}
+   */
+  public HookInstaller(ClassLoader classLoader, HookTargetCache hookTargetCache, String gateClazzName, Runnable onInstalled) {
+    this.classLoader = classLoader;
+    this.hookTargetCache = hookTargetCache;
+    this.gateClazzName = gateClazzName;
+    this.onInstalled = onInstalled;
+  }
+
+
+  public Step hook(String id, String clazzName, String methodName, Object... parameterTypesAndCallback) {
+    return addStep(new Step(id, clazzName, methodName, null, parameterTypesAndCallback));
+  }
+
+
+  /**
+   * Registers a hook installed once as a {@link ScopedHook}, see {@code XposedUtils.findAndHookScopedBestMethod_failSafe}.
+   */
+  public Step scopedHook(String id, String clazzName, String methodName, Object... parameterTypesAndCallback) {
+    Object[] scopedParameterTypesAndCallback = parameterTypesAndCallback.clone();
+    ScopedHook scopedHook = new ScopedHook(XposedUtils.toInstrumentedCallback(
+        clazzName, methodName, parameterTypesAndCallback.length - 1, XposedUtils.getCallback(parameterTypesAndCallback)));
+    scopedParameterTypesAndCallback[scopedParameterTypesAndCallback.length - 1] = scopedHook;
+
+    return addStep(new Step(id, clazzName, methodName, scopedHook, scopedParameterTypesAndCallback));
+  }
+
+
+  /**
+   * Registers the hook of the method's {@link HookDispatcher}, see {@code XposedUtils.getHookDispatcher}. Features
+   * using the method add their handlers to {@link Step#getHookDispatcher()} instead of hooking it again.
+   */
+  public Step dispatchedHook(String id, String clazzName, String methodName, Object... parameterTypes) {
+    Object[] parameterTypesAndCallback = Arrays.copyOf(parameterTypes, parameterTypes.length + 1);
+    parameterTypesAndCallback[parameterTypes.length] = XposedUtils.getHookDispatcher(clazzName, methodName, parameterTypes);
+
+    return addStep(new Step(id, clazzName, methodName, null, parameterTypesAndCallback));
+  }
+
+
+  private Step addStep(Step step) {
+    if(steps.containsKey(step.id)) {
+      throw new IllegalArgumentException("Duplicate hook installer step " + step.id);
+    }
+
+    steps.put(step.id, step);
+
+    return step;
+  }
+
+
+  /**
+   * Starts the background resolution and arms the gate, no steps can be added afterwards.
+   */
+  public void start() {
+    startNanos = System.nanoTime();
+
+    final ClassLoader classLoader = this.classLoader;
+
+    Thread resolveThread = new Thread("Overwatch-HookResolver") {
+      @Override
+      public void run() {
+        long resolveStartNanos = System.nanoTime();
+
+        for(Step step : steps.values()) {
+          // steps left after a resolve timeout are resolved by the installing thread
+          if(resolveTimedOut) {
+            break;
+          }
+
+          step.resolve(classLoader);
+        }
+
+        resolveNanos = System.nanoTime() - resolveStartNanos;
+        resolvedLatch.countDown();
+      }
+    };
+
+    resolveThread.setDaemon(true);
+    resolveThread.start();
+
+    XC_MethodHook gate = new XC_MethodHook() {
+      @Override
+      protected void beforeHookedMethod(MethodHookParam methodHookParam) {
+        install();
+      }
+    };
+
+    try {
+      gateUnhooks = XposedBridge.hookAllConstructors(findClass(gateClazzName, classLoader), gate);
+    }
+    catch(Throwable exception) {
+      log("Failed to hook constructors of %s, installing hooks right away", gateClazzName);
+      logException(exception);
+
+      install();
+    }
+  }
+
+
+  private void install() {
+    if(!installed.compareAndSet(false, true)) {
+      return;
+    }
+
+    long gateNanos = System.nanoTime();
+    gateDelayNanos = gateNanos - startNanos;
+
+    try {
+      if(!resolvedLatch.await(RESOLVE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+        resolveTimedOut = true;
+        log("Hook resolution takes longer than %d ms, resolving remaining hooks on %s", RESOLVE_TIMEOUT_MILLIS, Thread.currentThread().getName());
+      }
+    }
+    catch(InterruptedException exception) {
+      resolveTimedOut = true;
+      Thread.currentThread().interrupt();
+    }
+
+    long installStartNanos = System.nanoTime();
+    waitNanos = installStartNanos - gateNanos;
+
+    int installed = 0;
+    int failed = 0;
+    ClassLoader classLoader = this.classLoader;
+
+    for(Step step : steps.values()) {
+      if(installStep(step, classLoader)) {
+        installed++;
+      }
+      else {
+        failed++;
+      }
+    }
+
+    for(XC_MethodHook.Unhook gateUnhook : gateUnhooks) {
+      unhookMethod_failSafe(gateUnhook);
+    }
+
+    gateUnhooks = Collections.emptySet();
+    this.classLoader = null;
+
+    installNanos = System.nanoTime() - installStartNanos;
+    installedCount = installed;
+    failedCount = failed;
+
+    log(
+        "Hooks installed: %d of %d, resolve %.1f ms, gate after %.1f ms, wait %.1f ms, install %.1f ms",
+        installed, installed + failed, toMillis(resolveNanos), toMillis(gateDelayNanos), toMillis(waitNanos), toMillis(installNanos));
+
+    if(onInstalled != null) {
+      onInstalled.run();
+    }
+  }
+
+
+  /**
+   * Installs the step after its dependencies, returns whether it is hooked.
+   */
+  private boolean installStep(Step step, ClassLoader classLoader) {
+    if(step.visited) {
+      return step.unhook != null;
+    }
+
+    step.visited = true;
+
+    for(Step dependency : step.dependencies) {
+      if(!installStep(dependency, classLoader)) {
+        log("Skipping hook %s, it depends on %s", step.id, dependency.id);
+        return false;
+      }
+    }
+
+    step.resolve(classLoader);
+
+    if(step.method != null) {
+      XC_MethodHook callback = XposedUtils.getCallback(step.parameterTypesAndCallback);
+
+      // a dispatcher shared by several steps is hooked by the first one
+      step.unhook = callback instanceof HookDispatcher
+          ? ((HookDispatcher)callback).hookOnce(step.method)
+          : hookMethod_failSafe(step.method, callback);
+    }
+
+    return step.unhook != null;
+  }
+
+
+  public List<String> getReport() {
+    List<String> report = new ArrayList<>();
+
+    report.add("Hook installer:");
+
+    if(!installed.get()) {
+      report.add(String.format("  %d hooks waiting for %s", steps.size(), gateClazzName));
+    }
+    else {
+      report.add(String.format("  installed %d, failed %d", installedCount, failedCount));
+    }
+
+    report.add(String.format(
+        "  resolve %.1f ms, gate after %.1f ms, wait %.1f ms, install %.1f ms",
+        toMillis(resolveNanos), toMillis(gateDelayNanos), toMillis(waitNanos), toMillis(installNanos)));
+
+    for(Step step : steps.values()) {
+      HookDispatcher hookDispatcher = step.getHookDispatcher();
+
+      if(hookDispatcher != null) {
+        report.add(String.format("  %s handlers:", hookDispatcher.getName()));
+        report.addAll(hookDispatcher.getReport());
+      }
+    }
+
+    return report;
+  }
+
+
+  private static double toMillis(long nanos) {
+    return nanos < 0L ? Double.NaN : nanos / 1000000.0;
+  }
+
+}
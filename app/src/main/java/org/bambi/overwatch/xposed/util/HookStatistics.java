@@ -0,0 +1,88 @@
+package org.bambi.overwatch.xposed.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import de.robv.android.xposed.XC_MethodHook;
+
+/**
+ * Registry of the {@link MeasuredHook}s wrapped around the callbacks installed through {@link XposedUtils}. Measuring
+ * is off by default and switched at runtime, see {@code DiagnosticsReceiver}; while it is off a measured hook only
+ * reads the switches.
+ */
+public final class HookStatistics {
+
+  private static volatile boolean enabled;
+
+  private static final CopyOnWriteArrayList<MeasuredHook> measuredHooks = new CopyOnWriteArrayList<>();
+
+
+  private HookStatistics() {
+  }
+
+
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+
+  /**
+   * Switches measuring of all hooks, installed ones included.
+   */
+  public static void setEnabled(boolean enabled) {
+    HookStatistics.enabled = enabled;
+  }
+
+
+  /**
+   * Wraps the callback into a registered {@link MeasuredHook}.
+   */
+  public static XC_MethodHook measure(String name, XC_MethodHook callback) {
+    MeasuredHook measuredHook = new MeasuredHook(name, callback);
+    measuredHooks.add(measuredHook);
+
+    return measuredHook;
+  }
+
+
+  public static List<MeasuredHook> getMeasuredHooks() {
+    return new ArrayList<>(measuredHooks);
+  }
+
+
+  public static void reset() {
+    for(MeasuredHook measuredHook : measuredHooks) {
+      measuredHook.reset();
+    }
+  }
+
+
+  /**
+   * One line per measured hook: invocations and latency of its before and after parts. While measuring is off a
+   * single line says so, followed by the hooks measured before it was switched off.
+   */
+  public static List<String> getReport() {
+    List<String> report = new ArrayList<>();
+
+    if(!enabled) {
+      report.add("statistics disabled");
+    }
+
+    for(MeasuredHook measuredHook : measuredHooks) {
+      if(!enabled && measuredHook.getInvocations() == 0) {
+        continue;
+      }
+
+      report.add(String.format("%s [%s]: invocations=%d, before: %s, after: %s",
+          measuredHook.getName(),
+          measuredHook.getCallback().getClass().getSimpleName(),
+          measuredHook.getInvocations(),
+          measuredHook.getBeforeLatency(),
+          measuredHook.getAfterLatency()));
+    }
+
+    return report;
+  }
+
+}
@@ -0,0 +1,304 @@
+package org.bambi.overwatch.xposed.util;
+
+import static de.robv.android.xposed.XposedHelpers.findClass;
+import static de.robv.android.xposed.XposedHelpers.findMethodExact;
+import static org.bambi.overwatch.xposed.util.XposedUtils.log;
+import static org.bambi.overwatch.xposed.util.XposedUtils.logException;
+
+import android.content.pm.ApplicationInfo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persistent cache of resolved hook targets (declaring class, method name and parameter signature) of one hooked
+ * package. Entries are only valid for the APK they were resolved against, a launcher update invalidates the whole
+ * cache and the next start falls back to a full lookup.
+ *
+ * <p>The cache also remembers the method names {@link HookTargetMapping} mapped for the APK, so the mapping table
+ * is only read after a launcher or module update.
+ *
+ * <p>The cache is keyed by the APK identity (path, size and modification time). The target's versionCode is not
+ * known before its Application is created and opening the APK to checksum it would cost more than the lookup
+ * this cache saves; every package update changes at least the APK path or modification time anyway. The module APK
+ * is part of the key as well, a module update can bring a new mapping table.
+ */
+public class HookTargetCache {
+
+  private static final int CACHE_FILE_MAGIC = 0x4F574843;
+  private static final int CACHE_FILE_VERSION = 2;
+
+  private static final String CACHE_FILE_DIRECTORY = "cache/overwatch";
+  private static final String CACHE_FILE_NAME = "hook_targets.bin";
+
+
+  private static class Entry {
+    final String declaringClassName;
+    final String methodName;
+    final String[] parameterTypeNames;
+
+    Entry(String declaringClassName, String methodName, String[] parameterTypeNames) {
+      this.declaringClassName = declaringClassName;
+      this.methodName = methodName;
+      this.parameterTypeNames = parameterTypeNames;
+    }
+  }
+
+
+  private final File cacheFile;
+
+  private final String apkPath;
+  private final long apkSize;
+  private final long apkLastModified;
+
+  private final String modulePath;
+  private final long moduleLastModified;
+
+  private final Map<String, Entry> entries = new HashMap<>();
+  private final Map<String, String> methodNames = new HashMap<>();
+  private boolean methodNamesLoaded;
+  private boolean changed;
+
+
+  private HookTargetCache(File cacheFile, File apkFile, String modulePath) {
+    this.cacheFile = cacheFile;
+    this.apkPath = apkFile.getAbsolutePath();
+    this.apkSize = apkFile.length();
+    this.apkLastModified = apkFile.lastModified();
+    this.modulePath = modulePath;
+    this.moduleLastModified = modulePath != null ? new File(modulePath).lastModified() : 0L;
+  }
+
+
+  /**
+   * Loads the cache of the given package, returns an empty cache when there is none or it belongs to another APK.
+   */
+  public static HookTargetCache load(ApplicationInfo applicationInfo, String modulePath) {
+    HookTargetCache hookTargetCache = new HookTargetCache(
+        new File(new File(applicationInfo.dataDir, CACHE_FILE_DIRECTORY), CACHE_FILE_NAME),
+        new File(applicationInfo.sourceDir),
+        modulePath);
+
+    if(hookTargetCache.cacheFile.isFile()) {
+      try {
+        hookTargetCache.read();
+      }
+      catch(IOException exception) {
+        log("Failed to read hook target cache %s", hookTargetCache.cacheFile);
+        logException(exception);
+
+        hookTargetCache.entries.clear();
+        hookTargetCache.methodNames.clear();
+        hookTargetCache.methodNamesLoaded = false;
+        hookTargetCache.changed = true;
+      }
+    }
+
+    return hookTargetCache;
+  }
+
+
+  /**
+   * Returns the obfuscated name of the hook target in the cached APK, or the given default when it is not mapped.
+   */
+  public synchronized String getMethodName(String targetId, String defaultMethodName) {
+    if(!methodNamesLoaded) {
+      methodNames.putAll(HookTargetMapping.load(modulePath, apkPath));
+      methodNamesLoaded = true;
+      changed = true;
+    }
+
+    String methodName = methodNames.get(targetId);
+    return methodName != null ? methodName : defaultMethodName;
+  }
+
+
+  /**
+   * Builds the key a hook target is cached under from the arguments of a {@code findAndHookBestMethod_failSafe} call.
+   */
+  static String getLookupKey(String clazzName, String methodName, Object... parameterTypesAndCallback) {
+    StringBuilder lookupKey = new StringBuilder(clazzName).append('#').append(methodName).append('(');
+
+    for(int i = 0; i < parameterTypesAndCallback.length - 1; i++) {
+      Object type = parameterTypesAndCallback[i];
+
+      if(i > 0) {
+        lookupKey.append(',');
+      }
+
+      lookupKey.append(type instanceof Class ? ((Class<?>)type).getName() : String.valueOf(type));
+    }
+
+    return lookupKey.append(')').toString();
+  }
+
+
+  /**
+   * Returns the cached method, {@code null} when it is not cached or no longer resolvable.
+   */
+  synchronized Method findMethod(String lookupKey, ClassLoader classLoader) {
+    Entry entry = entries.get(lookupKey);
+
+    if(entry == null) {
+      return null;
+    }
+
+    try {
+      Class<?>[] parameterTypes = new Class<?>[entry.parameterTypeNames.length];
+
+      for(int i = 0; i < parameterTypes.length; i++) {
+        parameterTypes[i] = findClass(entry.parameterTypeNames[i], classLoader);
+      }
+
+      return findMethodExact(findClass(entry.declaringClassName, classLoader), entry.methodName, parameterTypes);
+    }
+    catch(Throwable exception) {
+      log("Dropping stale hook target cache entry %s", lookupKey);
+
+      entries.remove(lookupKey);
+      changed = true;
+
+      return null;
+    }
+  }
+
+
+  synchronized void put(String lookupKey, Method method) {
+    Class<?>[] parameterTypes = method.getParameterTypes();
+    String[] parameterTypeNames = new String[parameterTypes.length];
+
+    for(int i = 0; i < parameterTypes.length; i++) {
+      parameterTypeNames[i] = parameterTypes[i].getName();
+    }
+
+    entries.put(lookupKey, new Entry(method.getDeclaringClass().getName(), method.getName(), parameterTypeNames));
+    changed = true;
+  }
+
+
+  /**
+   * Writes the cache on a background thread if any entry was added or dropped since it was loaded.
+   */
+  public void saveIfChangedAsync() {
+    synchronized(this) {
+      if(!changed) {
+        return;
+      }
+    }
+
+    Thread saveThread = new Thread("Overwatch-HookTargetCache") {
+      @Override
+      public void run() {
+        try {
+          write();
+        }
+        catch(IOException exception) {
+          log("Failed to write hook target cache %s", cacheFile);
+          logException(exception);
+        }
+      }
+    };
+
+    saveThread.setDaemon(true);
+    saveThread.start();
+  }
+
+
+  private void read() throws IOException {
+    try(DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+      if(input.readInt() != CACHE_FILE_MAGIC || input.readInt() != CACHE_FILE_VERSION) {
+        changed = true;
+        return;
+      }
+
+      if(!apkPath.equals(input.readUTF()) || input.readLong() != apkSize || input.readLong() != apkLastModified ||
+         !String.valueOf(modulePath).equals(input.readUTF()) || input.readLong() != moduleLastModified) {
+        log("Hook target cache is outdated, hook targets will be resolved again");
+        changed = true;
+        return;
+      }
+
+      int entryCount = input.readInt();
+
+      for(int i = 0; i < entryCount; i++) {
+        String lookupKey = input.readUTF();
+        String declaringClassName = input.readUTF();
+        String methodName = input.readUTF();
+        String[] parameterTypeNames = new String[input.readUnsignedByte()];
+
+        for(int j = 0; j < parameterTypeNames.length; j++) {
+          parameterTypeNames[j] = input.readUTF();
+        }
+
+        entries.put(lookupKey, new Entry(declaringClassName, methodName, parameterTypeNames));
+      }
+
+      int methodNameCount = input.readInt();
+
+      for(int i = 0; i < methodNameCount; i++) {
+        methodNames.put(input.readUTF(), input.readUTF());
+      }
+
+      methodNamesLoaded = true;
+    }
+  }
+
+
+  private synchronized void write() throws IOException {
+    File cacheDirectory = cacheFile.getParentFile();
+
+    if(!cacheDirectory.isDirectory() && !cacheDirectory.mkdirs()) {
+      throw new IOException("Cannot create directory " + cacheDirectory);
+    }
+
+    File temporaryFile = new File(cacheDirectory, CACHE_FILE_NAME + ".tmp");
+
+    try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+      output.writeInt(CACHE_FILE_MAGIC);
+      output.writeInt(CACHE_FILE_VERSION);
+
+      output.writeUTF(apkPath);
+      output.writeLong(apkSize);
+      output.writeLong(apkLastModified);
+
+      output.writeUTF(String.valueOf(modulePath));
+      output.writeLong(moduleLastModified);
+
+      output.writeInt(entries.size());
+
+      for(Map.Entry<String, Entry> entry : entries.entrySet()) {
+        output.writeUTF(entry.getKey());
+        output.writeUTF(entry.getValue().declaringClassName);
+        output.writeUTF(entry.getValue().methodName);
+        output.writeByte(entry.getValue().parameterTypeNames.length);
+
+        for(String parameterTypeName : entry.getValue().parameterTypeNames) {
+          output.writeUTF(parameterTypeName);
+        }
+      }
+
+      output.writeInt(methodNames.size());
+
+      for(Map.Entry<String, String> methodName : methodNames.entrySet()) {
+        output.writeUTF(methodName.getKey());
+        output.writeUTF(methodName.getValue());
+      }
+    }
+
+    if(!temporaryFile.renameTo(cacheFile)) {
+      throw new IOException("Cannot rename " + temporaryFile + " to " + cacheFile);
+    }
+
+    changed = false;
+  }
+
+}
@@ -0,0 +1,83 @@
+package org.bambi.overwatch.xposed.util;
+
+import static org.bambi.overwatch.xposed.util.XposedUtils.log;
+import static org.bambi.overwatch.xposed.util.XposedUtils.logException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reader of the hook target mapping table generated by the {@code hookmapper} tool and bundled in the module assets.
+ * Each line maps a hook target id to its obfuscated method name in the APK with the given {@code classes.dex} CRC32.
+ */
+public class HookTargetMapping {
+
+  private static final String MAPPING_ASSET_ENTRY = "assets/hook_targets.map";
+  private static final String PRIMARY_DEX_ENTRY = "classes.dex";
+
+
+  /**
+   * Returns method names by target id mapped for the given APK, an empty map when the APK is not in the table.
+   */
+  public static Map<String, String> load(String modulePath, String apkPath) {
+    Map<String, String> methodNames = new HashMap<>();
+
+    if(modulePath == null) {
+      return methodNames;
+    }
+
+    try {
+      String apkKey = getApkKey(apkPath);
+
+      try(ZipFile moduleFile = new ZipFile(modulePath)) {
+        ZipEntry mappingEntry = moduleFile.getEntry(MAPPING_ASSET_ENTRY);
+
+        if(mappingEntry == null) {
+          return methodNames;
+        }
+
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(moduleFile.getInputStream(mappingEntry), StandardCharsets.UTF_8))) {
+          String line;
+
+          while((line = reader.readLine()) != null) {
+            if(line.startsWith(apkKey) && line.length() > apkKey.length() && line.charAt(apkKey.length()) == ' ') {
+              String[] tokens = line.split(" ");
+
+              if(tokens.length == 3) {
+                methodNames.put(tokens[1], tokens[2]);
+              }
+            }
+          }
+        }
+      }
+
+      log("Loaded %d mapped hook targets for %s", methodNames.size(), apkKey);
+    }
+    catch(IOException exception) {
+      log("Failed to load hook target mapping for %s", apkPath);
+      logException(exception);
+    }
+
+    return methodNames;
+  }
+
+
+  private static String getApkKey(String apkPath) throws IOException {
+    try(ZipFile apkFile = new ZipFile(apkPath)) {
+      ZipEntry primaryDexEntry = apkFile.getEntry(PRIMARY_DEX_ENTRY);
+
+      if(primaryDexEntry == null) {
+        throw new IOException("No " + PRIMARY_DEX_ENTRY + " in " + apkPath);
+      }
+
+      return String.format("%08x", primaryDexEntry.getCrc());
+    }
+  }
+
+}
@@ -0,0 +1,58 @@
+package org.bambi.overwatch.xposed.util;
+
+import de.robv.android.xposed.XC_MethodHook;
+
+/**
+ * Runtime switches of the {@link TracedHook}s (and {@link MeasuredHook}s) wrapped around the callbacks installed
+ * through {@link XposedUtils}.
+ * Sections go to the system trace ({@code android.os.Trace}) and to a {@link TraceRecorder} exported with the
+ * diagnostics, both are off by default and switched at runtime.
+ */
+public final class HookTracing {
+
+  public static final int DEFAULT_RECORDER_CAPACITY = 4096;
+
+  private static volatile boolean systemTraceEnabled;
+  private static volatile boolean recorderEnabled;
+
+  private static final TraceRecorder recorder = new TraceRecorder(DEFAULT_RECORDER_CAPACITY);
+
+
+  private HookTracing() {
+  }
+
+
+  public static boolean isSystemTraceEnabled() {
+    return systemTraceEnabled;
+  }
+
+
+  public static void setSystemTraceEnabled(boolean systemTraceEnabled) {
+    HookTracing.systemTraceEnabled = systemTraceEnabled;
+  }
+
+
+  public static boolean isRecorderEnabled() {
+    return recorderEnabled;
+  }
+
+
+  public static void setRecorderEnabled(boolean recorderEnabled) {
+    HookTracing.recorderEnabled = recorderEnabled;
+  }
+
+
+  public static TraceRecorder getRecorder() {
+    return recorder;
+  }
+
+
+  /**
+   * Wraps the callback into a {@link TracedHook}, tracing itself is switched at runtime. {@link MeasuredHook}s are
+   * traced as well.
+   */
+  public static XC_MethodHook trace(String name, XC_MethodHook callback) {
+    return new TracedHook(name, callback);
+  }
+
+}
@@ -0,0 +1,148 @@
+package org.bambi.overwatch.xposed.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free, fixed size latency histogram. Buckets are powers of two of nanoseconds split into four linear sub
+ * buckets, so reported percentiles are upper bounds at most 25% above the real value.
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 2;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong totalCount = new AtomicLong();
+  private final AtomicLong totalNanos = new AtomicLong();
+  private final AtomicLong maxNanos = new AtomicLong();
+
+
+  public void record(long nanos) {
+    if(nanos < 0L) {
+      nanos = 0L;
+    }
+
+    counts.incrementAndGet(getBucketIndex(nanos));
+    totalCount.incrementAndGet();
+    totalNanos.addAndGet(nanos);
+
+    long currentMaxNanos;
+
+    while(nanos > (currentMaxNanos = maxNanos.get())) {
+      if(maxNanos.compareAndSet(currentMaxNanos, nanos)) {
+        break;
+      }
+    }
+  }
+
+
+  /**
+   * Approximate heap held by the histogram's counters.
+   */
+  public long getRetainedBytes() {
+    return BUCKETS * 8L + 3 * 24L;
+  }
+
+
+  public long getCount() {
+    return totalCount.get();
+  }
+
+
+  public long getTotalNanos() {
+    return totalNanos.get();
+  }
+
+
+  public long getMaxNanos() {
+    return maxNanos.get();
+  }
+
+
+  public long getAverageNanos() {
+    long count = totalCount.get();
+    return count != 0L ? totalNanos.get() / count : 0L;
+  }
+
+
+  /**
+   * Returns the upper bound of the bucket holding the given percentile (0 to 100), 0 when nothing was recorded.
+   */
+  public long getPercentileNanos(double percentile) {
+    long count = 0L;
+
+    for(int i = 0; i < BUCKETS; i++) {
+      count += counts.get(i);
+    }
+
+    if(count == 0L) {
+      return 0L;
+    }
+
+    long rank = (long)Math.ceil(count * percentile / 100.0);
+    long seen = 0L;
+
+    for(int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+
+      if(seen >= rank && seen > 0L) {
+        return Math.min(getBucketUpperBound(i), maxNanos.get());
+      }
+    }
+
+    return maxNanos.get();
+  }
+
+
+  public void reset() {
+    for(int i = 0; i < BUCKETS; i++) {
+      counts.set(i, 0L);
+    }
+
+    totalCount.set(0L);
+    totalNanos.set(0L);
+    maxNanos.set(0L);
+  }
+
+
+  /**
+   * Short summary in microseconds: count, average, p50, p99 and max.
+   */
+  @Override
+  public String toString() {
+    return String.format("n=%d avg=%.1fus p50=%.1fus p99=%.1fus max=%.1fus",
+        getCount(),
+        getAverageNanos() / 1000.0,
+        getPercentileNanos(50.0) / 1000.0,
+        getPercentileNanos(99.0) / 1000.0,
+        getMaxNanos() / 1000.0);
+  }
+
+
+  private static int getBucketIndex(long nanos) {
+    if(nanos < SUB_BUCKETS) {
+      return (int)nanos;
+    }
+
+    int highestBit = 63 - Long.numberOfLeadingZeros(nanos);
+    int subBucket = (int)(nanos >>> (highestBit - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+    return (highestBit - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+
+  private static long getBucketUpperBound(int bucketIndex) {
+    if(bucketIndex < SUB_BUCKETS) {
+      return bucketIndex;
+    }
+
+    int highestBit = bucketIndex / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    long subBucket = bucketIndex % SUB_BUCKETS;
+
+    return ((SUB_BUCKETS + subBucket + 1) << (highestBit - SUB_BUCKET_BITS)) - 1;
+  }
+
+}
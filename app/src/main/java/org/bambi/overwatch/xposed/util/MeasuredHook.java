@@ -0,0 +1,66 @@
+package org.bambi.overwatch.xposed.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.robv.android.xposed.XC_MethodHook;
+
+/**
+ * Wrapper of a hook callback counting its invocations and recording how long its before and after parts take while
+ * {@link HookStatistics} are enabled, traced like a {@link TracedHook} with the same clock reads.
+ */
+public class MeasuredHook extends TracedHook {
+
+  private final AtomicLong invocations = new AtomicLong();
+  private final LatencyHistogram beforeLatency = new LatencyHistogram();
+  private final LatencyHistogram afterLatency = new LatencyHistogram();
+
+
+  public MeasuredHook(String name, XC_MethodHook callback) {
+    super(name, callback, true);
+  }
+
+
+  public long getInvocations() {
+    return invocations.get();
+  }
+
+
+  public LatencyHistogram getBeforeLatency() {
+    return beforeLatency;
+  }
+
+
+  public LatencyHistogram getAfterLatency() {
+    return afterLatency;
+  }
+
+
+  public void reset() {
+    invocations.set(0L);
+    beforeLatency.reset();
+    afterLatency.reset();
+  }
+
+
+  @Override
+  protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
+    if(HookStatistics.isEnabled()) {
+      invocations.incrementAndGet();
+    }
+
+    super.beforeHookedMethod(param);
+  }
+
+
+  @Override
+  void onBeforeTimed(long durationNanos) {
+    beforeLatency.record(durationNanos);
+  }
+
+
+  @Override
+  void onAfterTimed(long durationNanos) {
+    afterLatency.record(durationNanos);
+  }
+
+}
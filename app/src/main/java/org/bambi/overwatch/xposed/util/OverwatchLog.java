@@ -0,0 +1,310 @@
+package org.bambi.overwatch.xposed.util;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Formatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import de.robv.android.xposed.XposedBridge;
+import org.bambi.overwatch.xposed.BuildConfig;
+
+/**
+ * Level gated, asynchronous logging. Below {@link BuildConfig#LOG_LEVEL} calls are compiled out, below the runtime
+ * level they return before touching their arguments. Enabled events are stored unformatted in a preallocated ring
+ * buffer which a background thread formats and writes through {@link XposedBridge#log}, so hooks never block on log
+ * I/O. Events are dropped (and counted) when the buffer is full.
+ *
+ * <p>Messages are always format strings, also without arguments, so a literal percent sign is written {@code %%}.
+ * Each line is prefixed with the letter of its level.
+ *
+ * <p>Hot paths should guard calls whose arguments need boxing or computing with {@link #isLoggable(int)}.
+ */
+public final class OverwatchLog {
+
+  public static final int VERBOSE = 2;
+  public static final int DEBUG = 3;
+  public static final int INFO = 4;
+  public static final int WARN = 5;
+  public static final int ERROR = 6;
+  public static final int OFF = Integer.MAX_VALUE;
+
+  private static final int RING_BUFFER_SIZE = 256;
+  private static final int MAX_INLINE_ARGUMENTS = 3;
+
+  private static final Object[] NO_ARGUMENTS = new Object[0];
+
+
+  private static class Record {
+    volatile long publishedSequence = -1L;
+
+    int level;
+    String message;
+    Throwable throwable;
+    int argumentCount;
+    final Object[] arguments = new Object[MAX_INLINE_ARGUMENTS];
+    Object[] varArguments;
+  }
+
+
+  private static volatile int level = BuildConfig.LOG_LEVEL;
+
+  private static final Record[] records = new Record[RING_BUFFER_SIZE];
+
+  private static final AtomicLong writeSequence = new AtomicLong();
+  private static volatile long readSequence;
+  private static final AtomicLong droppedRecords = new AtomicLong();
+
+  private static volatile Thread drainThread;
+  private static volatile boolean drainThreadWaiting;
+
+  static {
+    for(int i = 0; i < records.length; i++) {
+      records[i] = new Record();
+    }
+  }
+
+
+  private OverwatchLog() {
+  }
+
+
+  public static boolean isLoggable(int level) {
+    return level >= BuildConfig.LOG_LEVEL && level >= OverwatchLog.level;
+  }
+
+
+  /**
+   * Sets the runtime level, {@link #OFF} disables logging. Levels below {@link BuildConfig#LOG_LEVEL} stay disabled.
+   */
+  public static void setLevel(int level) {
+    OverwatchLog.level = level;
+  }
+
+
+  public static long getDroppedRecords() {
+    return droppedRecords.get();
+  }
+
+
+  public static void log(int level, String message) {
+    if(isLoggable(level)) {
+      Record record = claim();
+
+      if(record != null) {
+        record.level = level;
+        record.message = message;
+        publish(record);
+      }
+    }
+  }
+
+
+  public static void log(int level, String message, Object argument0) {
+    if(isLoggable(level)) {
+      Record record = claim();
+
+      if(record != null) {
+        record.level = level;
+        record.message = message;
+        record.argumentCount = 1;
+        record.arguments[0] = argument0;
+        publish(record);
+      }
+    }
+  }
+
+
+  public static void log(int level, String message, Object argument0, Object argument1) {
+    if(isLoggable(level)) {
+      Record record = claim();
+
+      if(record != null) {
+        record.level = level;
+        record.message = message;
+        record.argumentCount = 2;
+        record.arguments[0] = argument0;
+        record.arguments[1] = argument1;
+        publish(record);
+      }
+    }
+  }
+
+
+  public static void log(int level, String message, Object argument0, Object argument1, Object argument2) {
+    if(isLoggable(level)) {
+      Record record = claim();
+
+      if(record != null) {
+        record.level = level;
+        record.message = message;
+        record.argumentCount = 3;
+        record.arguments[0] = argument0;
+        record.arguments[1] = argument1;
+        record.arguments[2] = argument2;
+        publish(record);
+      }
+    }
+  }
+
+
+  public static void log(int level, String message, Object... arguments) {
+    if(isLoggable(level)) {
+      Record record = claim();
+
+      if(record != null) {
+        record.level = level;
+        record.message = message;
+        record.varArguments = arguments;
+        publish(record);
+      }
+    }
+  }
+
+
+  public static void log(int level, Throwable throwable) {
+    if(isLoggable(level)) {
+      Record record = claim();
+
+      if(record != null) {
+        record.level = level;
+        record.throwable = throwable;
+        publish(record);
+      }
+    }
+  }
+
+
+  private static Record claim() {
+    long sequence;
+
+    do {
+      sequence = writeSequence.get();
+
+      if(sequence - readSequence >= RING_BUFFER_SIZE) {
+        droppedRecords.incrementAndGet();
+        return null;
+      }
+    }
+    while(!writeSequence.compareAndSet(sequence, sequence + 1));
+
+    Record record = records[(int)(sequence & (RING_BUFFER_SIZE - 1))];
+    record.publishedSequence = -sequence - 2;
+
+    return record;
+  }
+
+
+  private static void publish(Record record) {
+    record.publishedSequence = -record.publishedSequence - 2;
+
+    Thread thread = drainThread;
+
+    if(thread == null) {
+      startDrainThread();
+    }
+    else if(drainThreadWaiting) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+
+  private static synchronized void startDrainThread() {
+    if(drainThread != null) {
+      return;
+    }
+
+    Thread thread = new Thread("Overwatch-Log") {
+      @Override
+      public void run() {
+        drain();
+      }
+    };
+
+    thread.setDaemon(true);
+    thread.setPriority(Thread.MIN_PRIORITY);
+    drainThread = thread;
+    thread.start();
+  }
+
+
+  private static void drain() {
+    StringBuilder line = new StringBuilder(256);
+    Formatter formatter = new Formatter(line);
+    long reportedDroppedRecords = 0L;
+
+    while(true) {
+      long sequence = readSequence;
+      Record record = records[(int)(sequence & (RING_BUFFER_SIZE - 1))];
+
+      if(record.publishedSequence != sequence) {
+        drainThreadWaiting = true;
+
+        if(record.publishedSequence != sequence) {
+          LockSupport.parkNanos(50000000L);
+        }
+
+        drainThreadWaiting = false;
+        continue;
+      }
+
+      try {
+        line.setLength(0);
+        line.append(XposedUtils.OVERWATCH_LOG_PREFIX).append(' ').append(getLevelLetter(record.level)).append(": ");
+
+        if(record.throwable != null) {
+          StringWriter stackTrace = new StringWriter();
+          record.throwable.printStackTrace(new PrintWriter(stackTrace));
+          line.append(stackTrace);
+        }
+        else if(record.varArguments != null) {
+          formatter.format(record.message, record.varArguments);
+        }
+        else {
+          formatter.format(record.message, record.argumentCount == 0 ? NO_ARGUMENTS : copyArguments(record));
+        }
+
+        XposedBridge.log(line.toString());
+      }
+      catch(RuntimeException exception) {
+        XposedBridge.log(exception);
+      }
+
+      record.message = null;
+      record.throwable = null;
+      record.varArguments = null;
+      record.argumentCount = 0;
+      record.arguments[0] = record.arguments[1] = record.arguments[2] = null;
+
+      readSequence = sequence + 1;
+
+      long currentDroppedRecords = droppedRecords.get();
+
+      if(currentDroppedRecords != reportedDroppedRecords) {
+        XposedBridge.log(XposedUtils.OVERWATCH_LOG_PREFIX + " W: " + (currentDroppedRecords - reportedDroppedRecords) + " log records dropped");
+        reportedDroppedRecords = currentDroppedRecords;
+      }
+    }
+  }
+
+
+  private static char getLevelLetter(int level) {
+    switch(level) {
+      case VERBOSE: return 'V';
+      case DEBUG: return 'D';
+      case INFO: return 'I';
+      case WARN: return 'W';
+      case ERROR: return 'E';
+      default: return '?';
+    }
+  }
+
+
+  private static Object[] copyArguments(Record record) {
+    Object[] arguments = new Object[record.argumentCount];
+    System.arraycopy(record.arguments, 0, arguments, 0, arguments.length);
+
+    return arguments;
+  }
+
+}
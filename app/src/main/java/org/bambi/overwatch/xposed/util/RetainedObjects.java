@@ -0,0 +1,128 @@
+package org.bambi.overwatch.xposed.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Debug registry of objects of the hooked app the module touches, like activities and views, and of the heap the
+ * module itself holds. Objects are only referenced weakly; one still alive after the hooked app dropped it (e.g.
+ * an activity after recreation) points at a leak, a count of alive objects growing with uptime at a leak of the
+ * module.
+ */
+public final class RetainedObjects {
+
+  private static final class TrackedReference extends WeakReference<Object> {
+    final String label;
+
+    TrackedReference(String label, Object referent, ReferenceQueue<Object> queue) {
+      super(referent, queue);
+      this.label = label;
+    }
+  }
+
+
+  private static final ReferenceQueue<Object> collectedReferences = new ReferenceQueue<>();
+  private static final Set<TrackedReference> trackedReferences =
+      Collections.newSetFromMap(new ConcurrentHashMap<TrackedReference, Boolean>());
+  private static final ConcurrentHashMap<String, int[]> collectedCounts = new ConcurrentHashMap<>();
+
+
+  private RetainedObjects() {
+  }
+
+
+  /**
+   * Tracks the object under the label, an object already tracked is ignored.
+   */
+  public static void track(String label, Object object) {
+    expungeCollected();
+
+    for(TrackedReference trackedReference : trackedReferences) {
+      if(trackedReference.get() == object) {
+        return;
+      }
+    }
+
+    trackedReferences.add(new TrackedReference(label, object, collectedReferences));
+  }
+
+
+  private static void expungeCollected() {
+    Reference<?> reference;
+
+    while((reference = collectedReferences.poll()) != null) {
+      if(trackedReferences.remove(reference)) {
+        String label = ((TrackedReference)reference).label;
+
+        collectedCounts.putIfAbsent(label, new int[1]);
+        int[] collectedCount = collectedCounts.get(label);
+
+        synchronized(collectedCount) {
+          collectedCount[0]++;
+        }
+      }
+    }
+  }
+
+
+  /**
+   * One line per label with the alive and collected objects, and the heap held by the module's buffers. Objects
+   * are only counted as collected after a garbage collection.
+   */
+  public static List<String> getReport() {
+    expungeCollected();
+
+    Map<String, int[]> aliveCounts = new TreeMap<>();
+
+    for(TrackedReference trackedReference : trackedReferences) {
+      int[] aliveCount = aliveCounts.get(trackedReference.label);
+
+      if(aliveCount == null) {
+        aliveCount = new int[1];
+        aliveCounts.put(trackedReference.label, aliveCount);
+      }
+
+      if(trackedReference.get() != null) {
+        aliveCount[0]++;
+      }
+    }
+
+    for(String label : collectedCounts.keySet()) {
+      if(!aliveCounts.containsKey(label)) {
+        aliveCounts.put(label, new int[1]);
+      }
+    }
+
+    List<String> report = new ArrayList<>();
+
+    for(Map.Entry<String, int[]> entry : aliveCounts.entrySet()) {
+      int[] collectedCount = collectedCounts.get(entry.getKey());
+
+      report.add(String.format("%s: alive=%d, collected=%d", entry.getKey(), entry.getValue()[0], collectedCount != null ? collectedCount[0] : 0));
+    }
+
+    long histogramBytes = 0L;
+
+    for(MeasuredHook measuredHook : HookStatistics.getMeasuredHooks()) {
+      histogramBytes += measuredHook.getBeforeLatency().getRetainedBytes() + measuredHook.getAfterLatency().getRetainedBytes();
+    }
+
+    Runtime runtime = Runtime.getRuntime();
+
+    report.add(String.format("Module buffers: trace recorder %d KB, latency histograms %d KB",
+        HookTracing.getRecorder().getRetainedBytes() / 1024L, histogramBytes / 1024L));
+    report.add(String.format("Process heap: %d of %d KB used",
+        (runtime.totalMemory() - runtime.freeMemory()) / 1024L, runtime.maxMemory() / 1024L));
+
+    return report;
+  }
+
+}
@@ -0,0 +1,97 @@
+package org.bambi.overwatch.xposed.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import de.robv.android.xposed.XC_MethodHook;
+
+/**
+ * Hook which is installed once and forwards to its callback only while the calling thread is inside a scope
+ * opened by {@link #enterScope()}. Outside of a scope the hooked method pays a single field comparison.
+ *
+ * <p>The first thread entering a scope owns the fast path (plain field writes); other threads entering at the
+ * same time fall back to a thread local depth counter, so concurrent and re-entrant scopes never race.
+ */
+public class ScopedHook extends XC_MethodHook {
+
+  private static final AtomicReferenceFieldUpdater<ScopedHook, Thread> OWNER_THREAD_UPDATER =
+      AtomicReferenceFieldUpdater.newUpdater(ScopedHook.class, Thread.class, "ownerThread");
+
+  private final XC_MethodHook callback;
+
+  private volatile Thread ownerThread;
+  private int ownerDepth;
+
+  private final AtomicInteger foreignScopes = new AtomicInteger();
+  private final ThreadLocal<int[]> foreignDepth = new ThreadLocal<int[]>() {
+    @Override
+    protected int[] initialValue() {
+      return new int[1];
+    }
+  };
+
+
+  public ScopedHook(XC_MethodHook callback) {
+    this.callback = callback;
+  }
+
+
+  public XC_MethodHook getCallback() {
+    return callback;
+  }
+
+
+  public void enterScope() {
+    Thread currentThread = Thread.currentThread();
+
+    if(ownerThread == currentThread) {
+      ownerDepth++;
+    }
+    else if(OWNER_THREAD_UPDATER.compareAndSet(this, null, currentThread)) {
+      ownerDepth = 1;
+    }
+    else {
+      foreignDepth.get()[0]++;
+      foreignScopes.incrementAndGet();
+    }
+  }
+
+
+  public void exitScope() {
+    if(ownerThread == Thread.currentThread()) {
+      if(--ownerDepth == 0) {
+        ownerThread = null;
+      }
+    }
+    else {
+      int[] depth = foreignDepth.get();
+
+      if(depth[0] > 0) {
+        depth[0]--;
+        foreignScopes.decrementAndGet();
+      }
+    }
+  }
+
+
+  public boolean isInScope() {
+    return ownerThread == Thread.currentThread() || (foreignScopes.get() > 0 && foreignDepth.get()[0] > 0);
+  }
+
+
+  @Override
+  protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
+    if(isInScope()) {
+      callback.callBeforeHookedMethod(param);
+    }
+  }
+
+
+  @Override
+  protected void afterHookedMethod(MethodHookParam param) throws Throwable {
+    if(isInScope()) {
+      callback.callAfterHookedMethod(param);
+    }
+  }
+
+}
@@ -0,0 +1,194 @@
+package org.bambi.overwatch.xposed.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size ring buffer of trace sections, exported in the Chrome trace event format which Perfetto and
+ * {@code chrome://tracing} open. Only the most recent {@code capacity} (rounded up to a power of two) sections are
+ * kept.
+ *
+ * <p>Recording takes no lock and allocates nothing: a section is one record of three preallocated longs holding
+ * its begin and end time, numbered with one atomic increment, claimed with a compare and set of its sequence number
+ * and published with ordered writes. A section whose record is still being written by a writer a lap behind, or
+ * was already taken by a newer section, is dropped. A record being overwritten while it is exported is detected by
+ * its sequence number and left out.
+ */
+public final class TraceRecorder {
+
+  private static final int MAX_NAMES = 1 << 16;
+
+  private static final int RECORD_LENGTH = 3;
+
+  // sequence number of a record being written
+  private static final long SEQUENCE_BUSY = -1L;
+
+  private final int mask;
+  private final AtomicLong nextSequence = new AtomicLong();
+  // per record: its sequence number + 1, 0 when never written
+  private final AtomicLongArray sequences;
+  // per record: begin and end time in nanoseconds, thread id << 32 | name id
+  private final AtomicLongArray records;
+
+  private volatile String[] names = new String[0];
+
+
+  public TraceRecorder(int capacity) {
+    int length = Integer.highestOneBit(Math.max(capacity, 1) * 2 - 1);
+
+    mask = length - 1;
+    sequences = new AtomicLongArray(length);
+    records = new AtomicLongArray(length * RECORD_LENGTH);
+  }
+
+
+  /**
+   * Approximate heap held by the preallocated records.
+   */
+  public long getRetainedBytes() {
+    return (mask + 1) * 8L * (1 + RECORD_LENGTH);
+  }
+
+
+  /**
+   * Registers the name of sections recorded with the returned id, meant to be called once per section.
+   */
+  public synchronized int registerName(String name) {
+    String[] currentNames = names;
+
+    if(currentNames.length == MAX_NAMES) {
+      throw new IllegalStateException("Too many section names");
+    }
+
+    String[] newNames = Arrays.copyOf(currentNames, currentNames.length + 1);
+    newNames[currentNames.length] = name;
+    names = newNames;
+
+    return currentNames.length;
+  }
+
+
+  /**
+   * Records a section of the calling thread, times are {@code System.nanoTime()} values.
+   */
+  public void recordSection(int nameId, long beginNanos, long endNanos) {
+    long sequence = nextSequence.getAndIncrement();
+    int slot = (int)sequence & mask;
+    int offset = slot * RECORD_LENGTH;
+    long currentSequence = sequences.get(slot);
+
+    // two writers a lap apart must not interleave their records
+    if(currentSequence == SEQUENCE_BUSY || currentSequence > sequence || !sequences.compareAndSet(slot, currentSequence, SEQUENCE_BUSY)) {
+      return;
+    }
+
+    // the claim is a full barrier, lazySet orders the record writes before the final sequence number
+    records.lazySet(offset, beginNanos);
+    records.lazySet(offset + 1, endNanos);
+    records.lazySet(offset + 2, (Thread.currentThread().getId() << 32) | nameId);
+    sequences.lazySet(slot, sequence + 1);
+  }
+
+
+  /**
+   * Forgets all recorded sections, sections recorded at the same time may survive.
+   */
+  public void clear() {
+    for(int slot = 0; slot <= mask; slot++) {
+      sequences.set(slot, 0L);
+    }
+  }
+
+
+  /**
+   * Writes the recorded sections, oldest first, as a Chrome trace event JSON object of complete events. Timestamps
+   * are {@code System.nanoTime()} based, on Android the clock of the system trace.
+   */
+  public void writeChromeTrace(Writer writer, int processId) throws IOException {
+    String[] currentNames = names;
+    Set<Long> threadIds = new HashSet<>();
+    Map<Long, String> threadNames = new HashMap<>();
+    long lastSequence = nextSequence.get();
+    String separator = "\n";
+
+    for(Thread thread : Thread.getAllStackTraces().keySet()) {
+      threadNames.put(thread.getId(), thread.getName());
+    }
+
+    writer.write("{\"traceEvents\":[");
+
+    for(long sequence = Math.max(0L, lastSequence - mask - 1); sequence < lastSequence; sequence++) {
+      int slot = (int)sequence & mask;
+      int offset = slot * RECORD_LENGTH;
+
+      if(sequences.get(slot) != sequence + 1) {
+        continue;
+      }
+
+      long beginNanos = records.get(offset);
+      long endNanos = records.get(offset + 1);
+      long threadAndName = records.get(offset + 2);
+
+      if(sequences.get(slot) != sequence + 1) {
+        continue;
+      }
+
+      long threadId = threadAndName >>> 32;
+      int nameId = (int)threadAndName;
+      long durationNanos = endNanos - beginNanos;
+
+      writer.write(String.format("%s{\"name\":\"%s\",\"cat\":\"hook\",\"ph\":\"X\",\"ts\":%d.%03d,\"dur\":%d.%03d,\"pid\":%d,\"tid\":%d}",
+          separator,
+          nameId < currentNames.length ? escape(currentNames[nameId]) : "?",
+          beginNanos / 1000L, beginNanos % 1000L,
+          durationNanos / 1000L, durationNanos % 1000L,
+          processId,
+          threadId));
+
+      separator = ",\n";
+      threadIds.add(threadId);
+    }
+
+    for(Long threadId : threadIds) {
+      String threadName = threadNames.get(threadId);
+
+      if(threadName != null) {
+        writer.write(String.format("%s{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":%d,\"tid\":%d,\"args\":{\"name\":\"%s\"}}",
+            separator, processId, threadId, escape(threadName)));
+
+        separator = ",\n";
+      }
+    }
+
+    writer.write("\n]}\n");
+  }
+
+
+  private static String escape(String text) {
+    StringBuilder escaped = new StringBuilder(text.length());
+
+    for(int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+
+      if(c == '"' || c == '\\') {
+        escaped.append('\\').append(c);
+      }
+      else if(c < 0x20) {
+        escaped.append(String.format("\\u%04x", (int)c));
+      }
+      else {
+        escaped.append(c);
+      }
+    }
+
+    return escaped.toString();
+  }
+
+}
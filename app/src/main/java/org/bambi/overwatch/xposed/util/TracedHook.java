@@ -0,0 +1,144 @@
+package org.bambi.overwatch.xposed.util;
+
+import android.os.Trace;
+
+import de.robv.android.xposed.XC_MethodHook;
+
+/**
+ * Wrapper of a hook callback emitting a trace section around its before and after parts, see {@link HookTracing}.
+ * The switches are read once per section, so flipping them never leaves a section open.
+ */
+public class TracedHook extends XC_MethodHook {
+
+  // system trace section names are limited to 127 characters
+  private static final int MAX_SECTION_NAME_LENGTH = 127;
+
+  private final String name;
+  private final XC_MethodHook callback;
+  private final TraceRecorder recorder;
+  // subclasses timing calls while statistics are enabled share the clock reads with the recorder
+  private final boolean timed;
+
+  private final String beforeSectionName;
+  private final String afterSectionName;
+  private final int beforeNameId;
+  private final int afterNameId;
+
+
+  public TracedHook(String name, XC_MethodHook callback) {
+    this(name, callback, false);
+  }
+
+
+  TracedHook(String name, XC_MethodHook callback, boolean timed) {
+    this.name = name;
+    this.callback = callback;
+    this.recorder = HookTracing.getRecorder();
+    this.timed = timed;
+
+    beforeSectionName = toSectionName(name + " before");
+    afterSectionName = toSectionName(name + " after");
+    beforeNameId = recorder.registerName(beforeSectionName);
+    afterNameId = recorder.registerName(afterSectionName);
+  }
+
+
+  public String getName() {
+    return name;
+  }
+
+
+  public XC_MethodHook getCallback() {
+    return callback;
+  }
+
+
+  /**
+   * Called after the before part with its duration, only for timed hooks while statistics are enabled.
+   */
+  void onBeforeTimed(long durationNanos) {
+  }
+
+
+  /**
+   * Called after the after part with its duration, only for timed hooks while statistics are enabled.
+   */
+  void onAfterTimed(long durationNanos) {
+  }
+
+
+  @Override
+  protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
+    boolean systemTrace = HookTracing.isSystemTraceEnabled();
+    boolean record = HookTracing.isRecorderEnabled();
+    boolean timed = this.timed && HookStatistics.isEnabled();
+
+    if(systemTrace) {
+      Trace.beginSection(beforeSectionName);
+    }
+
+    long startTime = timed || record ? System.nanoTime() : 0L;
+
+    try {
+      callback.callBeforeHookedMethod(param);
+    }
+    finally {
+      if(timed || record) {
+        long endTime = System.nanoTime();
+
+        if(record) {
+          recorder.recordSection(beforeNameId, startTime, endTime);
+        }
+
+        if(timed) {
+          onBeforeTimed(endTime - startTime);
+        }
+      }
+
+      if(systemTrace) {
+        Trace.endSection();
+      }
+    }
+  }
+
+
+  @Override
+  protected void afterHookedMethod(MethodHookParam param) throws Throwable {
+    boolean systemTrace = HookTracing.isSystemTraceEnabled();
+    boolean record = HookTracing.isRecorderEnabled();
+    boolean timed = this.timed && HookStatistics.isEnabled();
+
+    if(systemTrace) {
+      Trace.beginSection(afterSectionName);
+    }
+
+    long startTime = timed || record ? System.nanoTime() : 0L;
+
+    try {
+      callback.callAfterHookedMethod(param);
+    }
+    finally {
+      if(timed || record) {
+        long endTime = System.nanoTime();
+
+        if(record) {
+          recorder.recordSection(afterNameId, startTime, endTime);
+        }
+
+        if(timed) {
+          onAfterTimed(endTime - startTime);
+        }
+      }
+
+      if(systemTrace) {
+        Trace.endSection();
+      }
+    }
+  }
+
+
+  private static String toSectionName(String name) {
+    return name.length() <= MAX_SECTION_NAME_LENGTH ? name : name.substring(name.length() - MAX_SECTION_NAME_LENGTH);
+  }
+
+}
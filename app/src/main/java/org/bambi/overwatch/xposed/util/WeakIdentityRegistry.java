@@ -0,0 +1,127 @@
+package org.bambi.overwatch.xposed.util;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Tags objects by identity without keeping them or their values alive, a value may reference its object. The
+ * registry holds {@code capacity} (rounded up to a power of two) tags, a new tag takes the slot of a removed or
+ * collected one first and overwrites the oldest only when all are in use, so it suits objects which are tagged
+ * shortly before they are looked up and removed, like a launcher until its start is over.
+ *
+ * <p>Lookups are safe on any thread and allocate nothing. The object tagged last is found with a single comparison,
+ * an older or untagged one costs up to {@code capacity} comparisons more.
+ */
+public final class WeakIdentityRegistry<V> {
+
+  private static final class Entry<V> extends WeakReference<Object> {
+    final WeakReference<V> value;
+
+    Entry(Object key, V value) {
+      super(key);
+      this.value = new WeakReference<>(value);
+    }
+  }
+
+
+  private final AtomicReferenceArray<Entry<V>> entries;
+  private final int mask;
+  private final AtomicInteger nextEntry = new AtomicInteger();
+  private volatile Entry<V> newestEntry;
+
+
+  public WeakIdentityRegistry(int capacity) {
+    int length = Integer.highestOneBit(Math.max(capacity, 1) * 2 - 1);
+
+    entries = new AtomicReferenceArray<>(length);
+    mask = length - 1;
+  }
+
+
+  public void put(Object key, V value) {
+    Entry<V> entry = new Entry<>(key, value);
+    int firstEntry = nextEntry.getAndIncrement();
+
+    newestEntry = entry;
+
+    for(int i = 0; i <= mask; i++) {
+      int slot = (firstEntry + i) & mask;
+      Entry<V> current = entries.get(slot);
+
+      if((current == null || current.get() == null) && entries.compareAndSet(slot, current, entry)) {
+        return;
+      }
+    }
+
+    entries.set(firstEntry & mask, entry);
+  }
+
+
+  /**
+   * Returns the value the object is tagged with, {@code null} when it is not tagged or the value was collected.
+   */
+  public V get(Object key) {
+    Entry<V> entry = find(key);
+    return entry != null ? entry.value.get() : null;
+  }
+
+
+  /**
+   * Removes the tag of the object and returns its value, {@code null} when it is not tagged or the value was
+   * collected.
+   */
+  public V remove(Object key) {
+    Entry<V> entry = find(key);
+
+    if(entry == null) {
+      return null;
+    }
+
+    // a put racing for the slot keeps it, its tag is newer
+    for(int i = 0; i <= mask; i++) {
+      if(entries.compareAndSet(i, entry, null)) {
+        break;
+      }
+    }
+
+    V value = entry.value.get();
+    entry.clear();
+    entry.value.clear();
+
+    return value;
+  }
+
+
+  /**
+   * Drops all tags.
+   */
+  public void clear() {
+    newestEntry = null;
+
+    for(int i = 0; i <= mask; i++) {
+      entries.set(i, null);
+    }
+  }
+
+
+  private Entry<V> find(Object key) {
+    Entry<V> entry = newestEntry;
+
+    // the object looked up is usually the one tagged last
+    if(entry != null && entry.get() == key) {
+      return entry;
+    }
+
+    for(int i = 0; i <= mask; i++) {
+      entry = entries.get(i);
+
+      if(entry != null && entry.get() == key) {
+        return entry;
+      }
+    }
+
+    return null;
+  }
+
+}
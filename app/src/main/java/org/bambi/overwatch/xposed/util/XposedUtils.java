@@ -7,22 +7,33 @@ import static de.robv.android.xposed.XposedHelpers.findMethodBestMatch;
 
 import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 import de.robv.android.xposed.XC_MethodHook;
-import de.robv.android.xposed.XposedBridge;
 import de.robv.android.xposed.XposedHelpers;
 
 public class XposedUtils {
 
   public static final String OVERWATCH_LOG_PREFIX = "##### Overwatch";
 
+  private static volatile HookTargetCache hookTargetCache;
+
+  // one dispatcher per hook target, guarded by itself
+  private static final Map<String, HookDispatcher> hookDispatchers = new HashMap<>();
+
 
   public static void log(String message, Object... parameters) {
-    XposedBridge.log(String.format(String.format("%s: %s", OVERWATCH_LOG_PREFIX, message), parameters));
+    OverwatchLog.log(OverwatchLog.INFO, message, parameters);
   }
 
 
-  private static XC_MethodHook getCallback(Object... parameterTypesAndCallback) {
+  public static void logException(Throwable exception) {
+    OverwatchLog.log(OverwatchLog.ERROR, exception);
+  }
+
+
+  static XC_MethodHook getCallback(Object... parameterTypesAndCallback) {
     if(parameterTypesAndCallback.length == 0 || !(parameterTypesAndCallback[parameterTypesAndCallback.length - 1] instanceof XC_MethodHook)) {
       throw new IllegalArgumentException("No method callback defined");
     }
@@ -31,7 +42,7 @@ public class XposedUtils {
   }
 
 
-  private static Class<?>[] getParameterTypes(ClassLoader classLoader, Object... parameterTypesAndCallback) {
+  static Class<?>[] getParameterTypes(ClassLoader classLoader, Object... parameterTypesAndCallback) {
     if(parameterTypesAndCallback.length > 1) {
       Class<?>[] parameterClasses = new Class<?>[parameterTypesAndCallback.length - 1];
 
@@ -57,15 +68,109 @@ public class XposedUtils {
   }
 
 
+  /**
+   * Sets the cache consulted by the {@code findAndHookBestMethod_failSafe} helpers, {@code null} disables caching.
+   */
+  public static void setHookTargetCache(HookTargetCache hookTargetCache) {
+    XposedUtils.hookTargetCache = hookTargetCache;
+  }
+
+
+  private static Method findMethodBestMatch_cached(
+      String clazzName, ClassLoader classLoader, String methodName, Object... parameterTypesAndCallback) {
+
+    HookTargetCache cache = hookTargetCache;
+
+    if(cache == null) {
+      return findMethodBestMatch(findClass(clazzName, classLoader), methodName, getParameterTypes(classLoader, parameterTypesAndCallback));
+    }
+
+    String lookupKey = HookTargetCache.getLookupKey(clazzName, methodName, parameterTypesAndCallback);
+    Method method = cache.findMethod(lookupKey, classLoader);
+
+    if(method == null) {
+      method = findMethodBestMatch(findClass(clazzName, classLoader), methodName, getParameterTypes(classLoader, parameterTypesAndCallback));
+      cache.put(lookupKey, method);
+    }
+
+    return method;
+  }
+
+
+  private static String getHookName(String clazzName, String methodName, int parameterCount) {
+    return String.format("%s.%s/%d", clazzName.substring(clazzName.lastIndexOf('.') + 1), methodName, parameterCount);
+  }
+
+
+  /**
+   * Wraps the callback into a {@link MeasuredHook}. A {@link ScopedHook} or {@link HookDispatcher} is returned as is,
+   * its inner callbacks are instrumented instead, so calls outside a scope or without enabled handlers stay bare.
+   */
+  static XC_MethodHook toInstrumentedCallback(String clazzName, String methodName, int parameterCount, XC_MethodHook callback) {
+    if(callback instanceof ScopedHook || callback instanceof HookDispatcher) {
+      return callback;
+    }
+
+    return HookStatistics.measure(getHookName(clazzName, methodName, parameterCount), callback);
+  }
+
+
+  private static Object[] toInstrumentedCallback(String clazzName, String methodName, Object... parameterTypesAndCallback) {
+    Object[] instrumentedParameterTypesAndCallback = parameterTypesAndCallback.clone();
+    instrumentedParameterTypesAndCallback[instrumentedParameterTypesAndCallback.length - 1] = toInstrumentedCallback(
+        clazzName, methodName, parameterTypesAndCallback.length - 1, getCallback(parameterTypesAndCallback));
+
+    return instrumentedParameterTypesAndCallback;
+  }
+
+
+  private static Object[] toScopedCallback(String clazzName, String methodName, Object... parameterTypesAndCallback) {
+    Object[] scopedParameterTypesAndCallback = parameterTypesAndCallback.clone();
+    scopedParameterTypesAndCallback[scopedParameterTypesAndCallback.length - 1] = new ScopedHook(toInstrumentedCallback(
+        clazzName, methodName, parameterTypesAndCallback.length - 1, getCallback(parameterTypesAndCallback)));
+
+    return scopedParameterTypesAndCallback;
+  }
+
+
+  private static ScopedHook getScopedCallback(XC_MethodHook.Unhook unhook, Object... scopedParameterTypesAndCallback) {
+    return unhook != null ? (ScopedHook)scopedParameterTypesAndCallback[scopedParameterTypesAndCallback.length - 1] : null;
+  }
+
+
+  private static String getLookupKey(Method method) {
+    Class<?>[] parameterTypes = method.getParameterTypes();
+
+    // the lookup key ignores the trailing callback
+    return HookTargetCache.getLookupKey(
+        method.getDeclaringClass().getName(), method.getName(), Arrays.copyOf(parameterTypes, parameterTypes.length + 1, Object[].class));
+  }
+
+
+  /**
+   * Logs a failed lookup or hook with its stack trace the first time only, see {@link HookFailures}.
+   */
+  private static void logFailure(String lookupKey, String clazzName, String message, String methodName, Throwable exception) {
+    if(HookFailures.recordFailure(lookupKey, clazzName)) {
+      log(message, clazzName, methodName);
+      logException(exception);
+    }
+  }
+
+
   public static XC_MethodHook.Unhook findAndHookMethod_failSafe(Class<?> clazz, String methodName, Object... parameterTypesAndCallback) {
     XC_MethodHook.Unhook unhook = null;
+    String lookupKey = HookTargetCache.getLookupKey(clazz.getName(), methodName, parameterTypesAndCallback);
+
+    if(HookFailures.isSkipped(lookupKey, clazz.getName())) {
+      return null;
+    }
 
     try {
-      unhook = findAndHookMethod(clazz, methodName, parameterTypesAndCallback);
+      unhook = findAndHookMethod(clazz, methodName, toInstrumentedCallback(clazz.getName(), methodName, parameterTypesAndCallback));
     }
     catch(Throwable exception) {
-      log("Failed to hook method %s.%s", clazz.getSimpleName(), methodName);
-      XposedBridge.log(exception);
+      logFailure(lookupKey, clazz.getName(), "Failed to hook method %s.%s", methodName, exception);
     }
 
     return unhook;
@@ -76,13 +181,17 @@ public class XposedUtils {
       String clazzName, ClassLoader classLoader, String methodName, Object... parameterTypesAndCallback) {
 
     XC_MethodHook.Unhook unhook = null;
+    String lookupKey = HookTargetCache.getLookupKey(clazzName, methodName, parameterTypesAndCallback);
+
+    if(HookFailures.isSkipped(lookupKey, clazzName)) {
+      return null;
+    }
 
     try {
-      unhook = findAndHookMethod(clazzName, classLoader, methodName, parameterTypesAndCallback);
+      unhook = findAndHookMethod(clazzName, classLoader, methodName, toInstrumentedCallback(clazzName, methodName, parameterTypesAndCallback));
     }
     catch(Throwable exception) {
-      log("Failed to hook method %s.%s", clazzName, methodName);
-      XposedBridge.log(exception);
+      logFailure(lookupKey, clazzName, "Failed to hook method %s.%s", methodName, exception);
     }
 
     return unhook;
@@ -91,16 +200,20 @@ public class XposedUtils {
 
   public static XC_MethodHook.Unhook findAndHookBestMethod_failSafe(Class<?> clazz, String methodName, Object... parameterTypesAndCallback) {
     XC_MethodHook.Unhook unhook = null;
+    String lookupKey = HookTargetCache.getLookupKey(clazz.getName(), methodName, parameterTypesAndCallback);
+
+    if(HookFailures.isSkipped(lookupKey, clazz.getName())) {
+      return null;
+    }
 
     try {
-      XC_MethodHook methodHook = getCallback(parameterTypesAndCallback);
+      XC_MethodHook methodHook = getCallback(toInstrumentedCallback(clazz.getName(), methodName, parameterTypesAndCallback));
 
-      Method method = findMethodBestMatch(clazz, methodName, getParameterTypes(clazz.getClassLoader(), parameterTypesAndCallback));
+      Method method = findMethodBestMatch_cached(clazz.getName(), clazz.getClassLoader(), methodName, parameterTypesAndCallback);
       unhook = hookMethod(method, methodHook);
     }
     catch(Throwable exception) {
-      log("Failed to hook method %s.%s", clazz.getSimpleName(), methodName);
-      XposedBridge.log(exception);
+      logFailure(lookupKey, clazz.getName(), "Failed to hook method %s.%s", methodName, exception);
     }
 
     return unhook;
@@ -111,29 +224,140 @@ public class XposedUtils {
       String clazzName, ClassLoader classLoader, String methodName, Object... parameterTypesAndCallback) {
 
     XC_MethodHook.Unhook unhook = null;
+    String lookupKey = HookTargetCache.getLookupKey(clazzName, methodName, parameterTypesAndCallback);
+
+    if(HookFailures.isSkipped(lookupKey, clazzName)) {
+      return null;
+    }
 
     try {
-      XC_MethodHook methodHook = getCallback(parameterTypesAndCallback);
+      XC_MethodHook methodHook = getCallback(toInstrumentedCallback(clazzName, methodName, parameterTypesAndCallback));
 
-      Method method = findMethodBestMatch(findClass(clazzName, classLoader), methodName, getParameterTypes(classLoader, parameterTypesAndCallback));
+      Method method = findMethodBestMatch_cached(clazzName, classLoader, methodName, parameterTypesAndCallback);
       unhook = hookMethod(method, methodHook);
     }
     catch(Throwable exception) {
-      log("Failed to hook method %s.%s", clazzName, methodName);
-      XposedBridge.log(exception);
+      logFailure(lookupKey, clazzName, "Failed to hook method %s.%s", methodName, exception);
     }
 
     return unhook;
   }
 
 
+  /**
+   * Resolves the method the way {@code findAndHookBestMethod_failSafe} does without hooking it, so resolution and
+   * installation can run on different threads. Returns {@code null} when the method could not be found.
+   */
+  public static Method findBestMethod_failSafe(
+      String clazzName, ClassLoader classLoader, String methodName, Object... parameterTypesAndCallback) {
+
+    Method method = null;
+    String lookupKey = HookTargetCache.getLookupKey(clazzName, methodName, parameterTypesAndCallback);
+
+    if(HookFailures.isSkipped(lookupKey, clazzName)) {
+      return null;
+    }
+
+    try {
+      method = findMethodBestMatch_cached(clazzName, classLoader, methodName, parameterTypesAndCallback);
+    }
+    catch(Throwable exception) {
+      logFailure(lookupKey, clazzName, "Failed to find method %s.%s", methodName, exception);
+    }
+
+    return method;
+  }
+
+
+  public static XC_MethodHook.Unhook hookMethod_failSafe(Method method, XC_MethodHook callback) {
+    XC_MethodHook.Unhook unhook = null;
+    String lookupKey = getLookupKey(method);
+
+    if(HookFailures.isSkipped(lookupKey, method.getDeclaringClass().getName())) {
+      return null;
+    }
+
+    try {
+      unhook = hookMethod(method, toInstrumentedCallback(
+          method.getDeclaringClass().getName(), method.getName(), method.getParameterTypes().length, callback));
+    }
+    catch(Throwable exception) {
+      logFailure(lookupKey, method.getDeclaringClass().getName(), "Failed to hook method %s.%s", method.getName(), exception);
+    }
+
+    return unhook;
+  }
+
+
+  /**
+   * Installs the callback once as a {@link ScopedHook}, returns {@code null} when the method could not be hooked.
+   */
+  public static ScopedHook findAndHookScopedMethod_failSafe(Class<?> clazz, String methodName, Object... parameterTypesAndCallback) {
+    Object[] scopedParameterTypesAndCallback = toScopedCallback(clazz.getName(), methodName, parameterTypesAndCallback);
+
+    return getScopedCallback(
+        findAndHookMethod_failSafe(clazz, methodName, scopedParameterTypesAndCallback),
+        scopedParameterTypesAndCallback);
+  }
+
+
+  /**
+   * Installs the callback once as a {@link ScopedHook}, returns {@code null} when the method could not be hooked.
+   */
+  public static ScopedHook findAndHookScopedBestMethod_failSafe(
+      String clazzName, ClassLoader classLoader, String methodName, Object... parameterTypesAndCallback) {
+
+    Object[] scopedParameterTypesAndCallback = toScopedCallback(clazzName, methodName, parameterTypesAndCallback);
+
+    return getScopedCallback(
+        findAndHookBestMethod_failSafe(clazzName, classLoader, methodName, scopedParameterTypesAndCallback),
+        scopedParameterTypesAndCallback);
+  }
+
+
+  /**
+   * Returns the dispatcher of the method, the same one for every feature hooking it, so the method is hooked once
+   * whatever number of features use it. It is hooked by {@link #findAndHookDispatcher_failSafe} or a
+   * {@link HookInstaller} step.
+   */
+  public static HookDispatcher getHookDispatcher(String clazzName, String methodName, Object... parameterTypes) {
+    // the lookup key ignores the trailing callback
+    String lookupKey = HookTargetCache.getLookupKey(clazzName, methodName, Arrays.copyOf(parameterTypes, parameterTypes.length + 1));
+
+    synchronized(hookDispatchers) {
+      HookDispatcher hookDispatcher = hookDispatchers.get(lookupKey);
+
+      if(hookDispatcher == null) {
+        hookDispatcher = new HookDispatcher(getHookName(clazzName, methodName, parameterTypes.length));
+        hookDispatchers.put(lookupKey, hookDispatcher);
+      }
+
+      return hookDispatcher;
+    }
+  }
+
+
+  /**
+   * Hooks the dispatcher of the method unless it is hooked already, returns {@code null} when the method could not be
+   * hooked.
+   */
+  public static HookDispatcher findAndHookDispatcher_failSafe(
+      String clazzName, ClassLoader classLoader, String methodName, Object... parameterTypes) {
+
+    HookDispatcher hookDispatcher = getHookDispatcher(clazzName, methodName, parameterTypes);
+    Method method = findBestMethod_failSafe(clazzName, classLoader, methodName, Arrays.copyOf(parameterTypes, parameterTypes.length + 1));
+
+    return method != null && hookDispatcher.hookOnce(method) != null ? hookDispatcher : null;
+  }
+
+
   public static void unhookMethod_failSafe(XC_MethodHook.Unhook unhook) {
     try {
       unhook.unhook();
     }
     catch(Throwable exception) {
       log("Failed to unhook method %s.%s", unhook.getHookedMethod().getDeclaringClass().getSimpleName(), unhook.getHookedMethod().getName());
-      XposedBridge.log(exception);
+      logException(exception);
     }
   }
 
@@ -0,0 +1,135 @@
+package org.bambi.overwatch.xposed.view;
+
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Collects the layout adjustments of a hook and applies them in one pass. Margins are offsets to the view's
+ * original margins, remembered the first time a view is adjusted, so applying the same mutation again (e.g. when
+ * Nova calls the hooked method once more) changes nothing. Only views whose layout params actually changed are
+ * marked for layout, together with their ancestors, and a single layout request is issued for all of them.
+ *
+ * <p>Must be used on the UI thread.
+ */
+public class LayoutMutation {
+
+  private static class MarginOffset {
+    final View view;
+    final int left;
+    final int top;
+    final int right;
+    final int bottom;
+
+    MarginOffset(View view, int left, int top, int right, int bottom) {
+      this.view = view;
+      this.left = left;
+      this.top = top;
+      this.right = right;
+      this.bottom = bottom;
+    }
+  }
+
+
+  // original margins (left, top, right, bottom) of every view adjusted so far
+  private static final Map<View, int[]> originalMargins = new WeakHashMap<>();
+
+  private final List<MarginOffset> marginOffsets = new ArrayList<>();
+
+
+  public LayoutMutation offsetTopMargin(View view, int top) {
+    return offsetMargins(view, 0, top, 0, 0);
+  }
+
+
+  public LayoutMutation offsetMargins(View view, int left, int top, int right, int bottom) {
+    marginOffsets.add(new MarginOffset(view, left, top, right, bottom));
+    return this;
+  }
+
+
+  /**
+   * Applies all adjustments, returns the number of views whose layout changed.
+   */
+  public int commit() {
+    View layoutRoot = null;
+    int changedViews = 0;
+
+    for(MarginOffset marginOffset : marginOffsets) {
+      if(applyMargins(marginOffset)) {
+        changedViews++;
+
+        View viewRoot = forceLayoutToRoot(marginOffset.view);
+
+        // views of different windows or detached trees need a request each
+        if(layoutRoot != null && layoutRoot != viewRoot) {
+          layoutRoot.requestLayout();
+        }
+
+        layoutRoot = viewRoot;
+      }
+    }
+
+    if(layoutRoot != null) {
+      layoutRoot.requestLayout();
+    }
+
+    marginOffsets.clear();
+
+    return changedViews;
+  }
+
+
+  private static boolean applyMargins(MarginOffset marginOffset) {
+    ViewGroup.MarginLayoutParams layoutParams = (ViewGroup.MarginLayoutParams)marginOffset.view.getLayoutParams();
+    int[] margins = originalMargins.get(marginOffset.view);
+
+    if(margins == null) {
+      margins = new int[] { layoutParams.leftMargin, layoutParams.topMargin, layoutParams.rightMargin, layoutParams.bottomMargin };
+      originalMargins.put(marginOffset.view, margins);
+    }
+
+    int leftMargin = margins[0] + marginOffset.left;
+    int topMargin = margins[1] + marginOffset.top;
+    int rightMargin = margins[2] + marginOffset.right;
+    int bottomMargin = margins[3] + marginOffset.bottom;
+
+    if(layoutParams.leftMargin == leftMargin && layoutParams.topMargin == topMargin &&
+       layoutParams.rightMargin == rightMargin && layoutParams.bottomMargin == bottomMargin) {
+      return false;
+    }
+
+    layoutParams.leftMargin = leftMargin;
+    layoutParams.topMargin = topMargin;
+    layoutParams.rightMargin = rightMargin;
+    layoutParams.bottomMargin = bottomMargin;
+
+    return true;
+  }
+
+
+  /**
+   * Marks the view and its ancestors below the root for layout, returns the root. The root is left to the final
+   * {@code requestLayout()}: a view whose parent already requested layout does not propagate the request.
+   */
+  private static View forceLayoutToRoot(View view) {
+    View current = view;
+
+    while(true) {
+      ViewParent parent = current.getParent();
+
+      if(!(parent instanceof View)) {
+        return current;
+      }
+
+      current.forceLayout();
+      current = (View)parent;
+    }
+  }
+
+}
@@ -0,0 +1,146 @@
+package org.bambi.overwatch.xposed.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import de.robv.android.xposed.XC_MethodHook;
+import de.robv.android.xposed.XposedBridge;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Cost of a call of a method hooked by several features: one traced hook per feature against a single traced
+ * {@link HookDispatcher} with a handler per feature, and the dispatcher with all but one handler switched off.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HookDispatchBenchmark {
+
+  public static class AppSearchView {
+    public int eN(int x, int y, int duration) {
+      return x + y + duration;
+    }
+
+    public int eN(int duration) {
+      return duration;
+    }
+
+    public int fb() {
+      return 0;
+    }
+  }
+
+
+  private static final XposedBridge.OriginalMethod ORIGINAL_SHOW = new XposedBridge.OriginalMethod() {
+    @Override
+    public Object invoke(Object thisObject, Object[] args) {
+      return ((AppSearchView)thisObject).eN((Integer)args[0], (Integer)args[1], (Integer)args[2]);
+    }
+  };
+
+  private static final XposedBridge.OriginalMethod ORIGINAL_HIDE = new XposedBridge.OriginalMethod() {
+    @Override
+    public Object invoke(Object thisObject, Object[] args) {
+      return ((AppSearchView)thisObject).eN((Integer)args[0]);
+    }
+  };
+
+  private static final XposedBridge.OriginalMethod ORIGINAL_TOGGLE_KEYBOARD = new XposedBridge.OriginalMethod() {
+    @Override
+    public Object invoke(Object thisObject, Object[] args) {
+      return ((AppSearchView)thisObject).fb();
+    }
+  };
+
+  private static final Object[] NO_ARGS = {};
+
+  @Param({"1", "4", "8"})
+  public int featureCount;
+
+  private final AppSearchView appSearchView = new AppSearchView();
+  private final Object[] showArgs = { 0, 0, 200 };
+  private final Object[] hideArgs = { 200 };
+
+  private Method separateMethod;
+  private Method dispatchedMethod;
+  private Method oneEnabledMethod;
+  private XC_MethodHook.Unhook[] unhooks;
+
+  // keeps the handlers from being optimized away
+  private int calls;
+
+
+  @Setup
+  public void setUp() throws NoSuchMethodException {
+    separateMethod = AppSearchView.class.getMethod("eN", Integer.TYPE, Integer.TYPE, Integer.TYPE);
+    dispatchedMethod = AppSearchView.class.getMethod("eN", Integer.TYPE);
+    oneEnabledMethod = AppSearchView.class.getMethod("fb");
+
+    HookDispatcher hookDispatcher = new HookDispatcher("AppSearchView.eN/1");
+    HookDispatcher oneEnabledDispatcher = new HookDispatcher("AppSearchView.fb/0");
+    unhooks = new XC_MethodHook.Unhook[featureCount + 2];
+
+    for(int i = 0; i < featureCount; i++) {
+      unhooks[i] = XposedBridge.hookMethod(separateMethod, HookTracing.trace("AppSearchView.eN/3", newFeature()));
+      hookDispatcher.add("feature" + i, i, newFeature());
+      oneEnabledDispatcher.add("feature" + i, i, newFeature());
+
+      if(i > 0) {
+        oneEnabledDispatcher.setEnabled("feature" + i, false);
+      }
+    }
+
+    unhooks[featureCount] = XposedBridge.hookMethod(dispatchedMethod, HookTracing.trace("AppSearchView.eN/1", hookDispatcher));
+    unhooks[featureCount + 1] = XposedBridge.hookMethod(oneEnabledMethod, HookTracing.trace("AppSearchView.fb/0", oneEnabledDispatcher));
+  }
+
+
+  @TearDown
+  public void tearDown() {
+    for(XC_MethodHook.Unhook unhook : unhooks) {
+      unhook.unhook();
+    }
+  }
+
+
+  private XC_MethodHook newFeature() {
+    return new XC_MethodHook() {
+      @Override
+      protected void beforeHookedMethod(MethodHookParam param) {
+        calls++;
+      }
+
+      @Override
+      protected void afterHookedMethod(MethodHookParam param) {
+        calls++;
+      }
+    };
+  }
+
+
+  @Benchmark
+  public Object separateHooks() throws Throwable {
+    return XposedBridge.invokeHooked(separateMethod, appSearchView, showArgs, ORIGINAL_SHOW);
+  }
+
+
+  @Benchmark
+  public Object dispatcher() throws Throwable {
+    return XposedBridge.invokeHooked(dispatchedMethod, appSearchView, hideArgs, ORIGINAL_HIDE);
+  }
+
+
+  @Benchmark
+  public Object dispatcher_oneEnabled() throws Throwable {
+    return XposedBridge.invokeHooked(oneEnabledMethod, appSearchView, NO_ARGS, ORIGINAL_TOGGLE_KEYBOARD);
+  }
+
+}
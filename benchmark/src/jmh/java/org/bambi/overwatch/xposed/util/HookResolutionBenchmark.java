@@ -0,0 +1,137 @@
+package org.bambi.overwatch.xposed.util;
+
+import static de.robv.android.xposed.XposedHelpers.findClass;
+import static de.robv.android.xposed.XposedHelpers.findMethodBestMatch;
+import static org.bambi.overwatch.xposed.util.XposedUtils.findAndHookBestMethod_failSafe;
+import static org.bambi.overwatch.xposed.util.XposedUtils.unhookMethod_failSafe;
+
+import android.content.pm.ApplicationInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import de.robv.android.xposed.XC_MethodHook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Cost of the hook resolution paths of {@link XposedUtils}: class and method lookup, decoding of the varargs
+ * parameter types, install and uninstall of a hook, with and without the {@link HookTargetCache}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HookResolutionBenchmark {
+
+  public static class AppSearchView {
+    void eN(int x, int y, int duration) {
+    }
+
+    void eN(int duration) {
+    }
+
+    void fb() {
+    }
+
+    void setLauncher(Launcher launcher) {
+    }
+  }
+
+  public static class Launcher {
+  }
+
+
+  private static final String APP_SEARCH_VIEW_CLASS = AppSearchView.class.getName();
+  private static final String LAUNCHER_CLASS = Launcher.class.getName();
+
+  private static final XC_MethodHook NO_OP_HOOK = new XC_MethodHook() {
+  };
+
+
+  @Param({"false", "true"})
+  public boolean hookTargetCache;
+
+  private ClassLoader classLoader;
+  private File cacheDirectory;
+  private ScopedHook scopedHook;
+
+
+  @Setup
+  public void setUp() throws IOException {
+    classLoader = getClass().getClassLoader();
+    scopedHook = new ScopedHook(NO_OP_HOOK);
+
+    if(hookTargetCache) {
+      cacheDirectory = Files.createTempDirectory("overwatch-benchmark").toFile();
+
+      ApplicationInfo applicationInfo = new ApplicationInfo();
+      applicationInfo.dataDir = cacheDirectory.getPath();
+      applicationInfo.sourceDir = new File(cacheDirectory, "base.apk").getPath();
+
+      XposedUtils.setHookTargetCache(HookTargetCache.load(applicationInfo, null));
+    }
+  }
+
+
+  @TearDown
+  public void tearDown() {
+    XposedUtils.setHookTargetCache(null);
+  }
+
+
+  @Benchmark
+  public Class<?> resolveClass() {
+    return findClass(APP_SEARCH_VIEW_CLASS, classLoader);
+  }
+
+
+  @Benchmark
+  public Method resolveBestMethod() {
+    return findMethodBestMatch(AppSearchView.class, "eN", Integer.TYPE, Integer.TYPE, Integer.TYPE);
+  }
+
+
+  @Benchmark
+  public Class<?>[] decodeParameterTypes_classes() {
+    return XposedUtils.getParameterTypes(classLoader, Integer.TYPE, Integer.TYPE, Integer.TYPE, NO_OP_HOOK);
+  }
+
+
+  @Benchmark
+  public Class<?>[] decodeParameterTypes_names() {
+    return XposedUtils.getParameterTypes(classLoader, LAUNCHER_CLASS, NO_OP_HOOK);
+  }
+
+
+  @Benchmark
+  public XC_MethodHook getCallback() {
+    return XposedUtils.getCallback(Integer.TYPE, Integer.TYPE, Integer.TYPE, NO_OP_HOOK);
+  }
+
+
+  @Benchmark
+  public void hookUnhookCycle() {
+    XC_MethodHook.Unhook unhook = findAndHookBestMethod_failSafe(
+        APP_SEARCH_VIEW_CLASS, classLoader, "eN", Integer.TYPE, Integer.TYPE, Integer.TYPE, NO_OP_HOOK);
+
+    unhookMethod_failSafe(unhook);
+  }
+
+
+  @Benchmark
+  public void scopedHookCycle() {
+    scopedHook.enterScope();
+    scopedHook.exitScope();
+  }
+
+}
@@ -0,0 +1,55 @@
+package org.bambi.overwatch.xposed.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of logging on the calling thread, enabled and disabled, against the former double {@code String.format}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LogBenchmark {
+
+  @Param({"false", "true"})
+  public boolean enabled;
+
+  private int color = 0xE0080808;
+  private boolean show = true;
+
+
+  @Setup
+  public void setUp() {
+    OverwatchLog.setLevel(enabled ? OverwatchLog.VERBOSE : OverwatchLog.OFF);
+  }
+
+
+  @Benchmark
+  public String formatTwice() {
+    return String.format(String.format("%s: %s", XposedUtils.OVERWATCH_LOG_PREFIX, "AnimatorSet.start() hook for %s and %b"),
+        Integer.toHexString(color), show);
+  }
+
+
+  @Benchmark
+  public void log_varargs() {
+    XposedUtils.log("AnimatorSet.start() hook for %08x and %b", color, show);
+  }
+
+
+  @Benchmark
+  public void log_guarded() {
+    if(OverwatchLog.isLoggable(OverwatchLog.DEBUG)) {
+      OverwatchLog.log(OverwatchLog.DEBUG, "AnimatorSet.start() hook for %08x and %b", color, show);
+    }
+  }
+
+}
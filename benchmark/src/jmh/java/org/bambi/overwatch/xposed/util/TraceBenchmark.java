@@ -0,0 +1,79 @@
+package org.bambi.overwatch.xposed.util;
+
+import java.util.concurrent.TimeUnit;
+
+import de.robv.android.xposed.XC_MethodHook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Cost of tracing a hook: a bare callback against a {@link TracedHook} and a {@link MeasuredHook} with the
+ * recorder on and off, and of recording a section from several threads sharing the ring buffer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TraceBenchmark {
+
+  @Param({"false", "true"})
+  public boolean recorderEnabled;
+
+  private final XC_MethodHook callback = new XC_MethodHook() {
+    @Override
+    protected void beforeHookedMethod(MethodHookParam param) {
+    }
+  };
+
+  private final XC_MethodHook.MethodHookParam param = new XC_MethodHook.MethodHookParam();
+
+  private XC_MethodHook tracedHook;
+  private XC_MethodHook measuredHook;
+  private TraceRecorder recorder;
+  private int nameId;
+
+
+  @Setup
+  public void setUp() {
+    HookTracing.setRecorderEnabled(recorderEnabled);
+    HookStatistics.setEnabled(true);
+
+    tracedHook = new TracedHook("AppSearchView.eN/3", callback);
+    measuredHook = new MeasuredHook("AppSearchView.eN/3", callback);
+    recorder = new TraceRecorder(HookTracing.DEFAULT_RECORDER_CAPACITY);
+    nameId = recorder.registerName("AppSearchView.eN/3 before");
+  }
+
+
+  @Benchmark
+  public void bare() throws Throwable {
+    callback.callBeforeHookedMethod(param);
+  }
+
+
+  @Benchmark
+  public void traced() throws Throwable {
+    tracedHook.callBeforeHookedMethod(param);
+  }
+
+
+  @Benchmark
+  public void measured() throws Throwable {
+    measuredHook.callBeforeHookedMethod(param);
+  }
+
+
+  @Benchmark
+  @Threads(4)
+  public void recordSection_4threads() {
+    long now = System.nanoTime();
+    recorder.recordSection(nameId, now, now);
+  }
+
+}
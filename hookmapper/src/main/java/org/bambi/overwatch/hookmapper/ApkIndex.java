@@ -0,0 +1,155 @@
+package org.bambi.overwatch.hookmapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Method fingerprints of the hook target classes of one APK. Dex files are inflated and indexed one at a time and
+ * dropped right after, only the fingerprints of the target classes are kept. The scans running in parallel share a
+ * budget of inflated bytes, a scan waits for it before inflating its next dex.
+ */
+final class ApkIndex {
+
+  private static final Pattern DEX_ENTRY_PATTERN = Pattern.compile("classes\\d*\\.dex");
+
+  // half of the heap in KB, the other half is left to the fingerprints and the zip buffers
+  private static final int INFLATE_BUDGET_KB = (int)Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 2048L);
+  private static final Semaphore INFLATE_BUDGET = new Semaphore(INFLATE_BUDGET_KB);
+
+
+  static final class ScanTask extends RecursiveTask<ApkIndex> {
+    private final Path apkFile;
+    private final Set<String> classDescriptors;
+
+    ScanTask(Path apkFile, Set<String> classDescriptors) {
+      this.apkFile = apkFile;
+      this.classDescriptors = classDescriptors;
+    }
+
+    @Override
+    protected ApkIndex compute() {
+      try {
+        return scan(apkFile, classDescriptors);
+      }
+      catch(IOException | RuntimeException exception) {
+        System.err.printf("Failed to index %s: %s%n", apkFile, exception);
+        return null;
+      }
+    }
+  }
+
+
+  final Path apkFile;
+  final String key;
+
+  private final Map<String, List<MethodFingerprint>> methodsByClass = new HashMap<>();
+
+
+  private ApkIndex(Path apkFile, String key) {
+    this.apkFile = apkFile;
+    this.key = key;
+  }
+
+
+  List<MethodFingerprint> getMethods(String classDescriptor) {
+    List<MethodFingerprint> methods = methodsByClass.get(classDescriptor);
+    return methods != null ? methods : Collections.<MethodFingerprint>emptyList();
+  }
+
+
+  /**
+   * Key under which the module looks up mappings for this APK: CRC32 of its {@code classes.dex} as stored in the
+   * zip directory, so the module does not need to inflate anything to compute it.
+   */
+  static String getKey(ZipFile zipFile) throws IOException {
+    ZipEntry primaryDexEntry = zipFile.getEntry("classes.dex");
+
+    if(primaryDexEntry == null) {
+      throw new IOException("No classes.dex in " + zipFile.getName());
+    }
+
+    return String.format("%08x", primaryDexEntry.getCrc());
+  }
+
+
+  static ApkIndex scan(Path apkFile, Set<String> classDescriptors) throws IOException {
+    try(ZipFile zipFile = new ZipFile(apkFile.toFile())) {
+      final ApkIndex apkIndex = new ApkIndex(apkFile, getKey(zipFile));
+
+      List<? extends ZipEntry> entries = Collections.list(zipFile.entries());
+
+      for(ZipEntry entry : entries) {
+        if(!DEX_ENTRY_PATTERN.matcher(entry.getName()).matches()) {
+          continue;
+        }
+
+        // a dex larger than the budget takes all of it and is scanned alone
+        int sizeKb = (int)Math.min(INFLATE_BUDGET_KB, Math.max(1L, entry.getSize() / 1024L));
+        INFLATE_BUDGET.acquireUninterruptibly(sizeKb);
+
+        try {
+          indexDex(apkIndex, new DexReader(readFully(zipFile, entry)), classDescriptors);
+        }
+        finally {
+          INFLATE_BUDGET.release(sizeKb);
+        }
+      }
+
+      return apkIndex;
+    }
+  }
+
+
+  private static void indexDex(final ApkIndex apkIndex, final DexReader dexReader, Set<String> classDescriptors) {
+    dexReader.visitMethods(classDescriptors, new DexReader.MethodVisitor() {
+      @Override
+      public void visitMethod(String classDescriptor, int methodIndex, int accessFlags, int codeOffset) {
+        List<MethodFingerprint> methods = apkIndex.methodsByClass.get(classDescriptor);
+
+        if(methods == null) {
+          methods = new ArrayList<>();
+          apkIndex.methodsByClass.put(classDescriptor, methods);
+        }
+
+        methods.add(MethodFingerprint.create(dexReader, methodIndex, accessFlags, codeOffset));
+      }
+    });
+  }
+
+
+  private static byte[] readFully(ZipFile zipFile, ZipEntry entry) throws IOException {
+    if(entry.getSize() < 0 || entry.getSize() > Integer.MAX_VALUE) {
+      throw new IOException("Unsupported dex size of " + entry.getName());
+    }
+
+    byte[] bytes = new byte[(int)entry.getSize()];
+
+    try(InputStream input = zipFile.getInputStream(entry)) {
+      int offset = 0;
+      int read;
+
+      while(offset < bytes.length && (read = input.read(bytes, offset, bytes.length - offset)) > 0) {
+        offset += read;
+      }
+
+      if(offset != bytes.length) {
+        throw new IOException("Truncated " + entry.getName());
+      }
+    }
+
+    return bytes;
+  }
+
+}
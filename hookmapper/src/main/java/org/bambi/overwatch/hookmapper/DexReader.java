@@ -0,0 +1,303 @@
+package org.bambi.overwatch.hookmapper;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Set;
+
+/**
+ * Minimal reader of the dex format. Only the sections needed to fingerprint methods of a few classes are decoded,
+ * strings are decoded on demand.
+ */
+final class DexReader {
+
+  interface MethodVisitor {
+    void visitMethod(String classDescriptor, int methodIndex, int accessFlags, int codeOffset);
+  }
+
+  interface ReferenceVisitor {
+    void visitString(String string);
+
+    void visitType(String typeDescriptor);
+
+    void visitField(int opcode, int fieldIndex);
+
+    void visitMethod(int opcode, int methodIndex);
+  }
+
+
+  /**
+   * Width of each opcode in 16-bit code units, payload pseudo-instructions behind {@code nop} are handled separately.
+   */
+  private static final int[] OPCODE_WIDTHS = new int[256];
+
+  static {
+    int[][] widthRanges = {
+        // from opcode, to opcode (inclusive), width
+        {0x00, 0x01, 1}, {0x02, 0x02, 2}, {0x03, 0x03, 3}, {0x04, 0x04, 1}, {0x05, 0x05, 2}, {0x06, 0x06, 3},
+        {0x07, 0x07, 1}, {0x08, 0x08, 2}, {0x09, 0x09, 3}, {0x0a, 0x12, 1}, {0x13, 0x13, 2}, {0x14, 0x14, 3},
+        {0x15, 0x16, 2}, {0x17, 0x17, 3}, {0x18, 0x18, 5}, {0x19, 0x1a, 2}, {0x1b, 0x1b, 3}, {0x1c, 0x1c, 2},
+        {0x1d, 0x1e, 1}, {0x1f, 0x20, 2}, {0x21, 0x21, 1}, {0x22, 0x23, 2}, {0x24, 0x26, 3}, {0x27, 0x28, 1},
+        {0x29, 0x29, 2}, {0x2a, 0x2c, 3}, {0x2d, 0x3d, 2}, {0x3e, 0x43, 1}, {0x44, 0x6d, 2}, {0x6e, 0x72, 3},
+        {0x73, 0x73, 1}, {0x74, 0x78, 3}, {0x79, 0x8f, 1}, {0x90, 0xaf, 2}, {0xb0, 0xcf, 1}, {0xd0, 0xe2, 2},
+        {0xe3, 0xf9, 1}, {0xfa, 0xfb, 4}, {0xfc, 0xfd, 3}, {0xfe, 0xff, 2}
+    };
+
+    for(int[] widthRange : widthRanges) {
+      for(int opcode = widthRange[0]; opcode <= widthRange[1]; opcode++) {
+        OPCODE_WIDTHS[opcode] = widthRange[2];
+      }
+    }
+  }
+
+
+  private final ByteBuffer dex;
+
+  private final int stringIdsOffset;
+  private final int typeIdsOffset;
+  private final int protoIdsOffset;
+  private final int fieldIdsOffset;
+  private final int methodIdsOffset;
+  private final int classDefsSize;
+  private final int classDefsOffset;
+
+  private final String[] strings;
+
+
+  DexReader(byte[] bytes) {
+    dex = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+
+    if(bytes.length < 0x70 || bytes[0] != 'd' || bytes[1] != 'e' || bytes[2] != 'x' || bytes[3] != '\n') {
+      throw new IllegalArgumentException("Not a dex file");
+    }
+
+    strings = new String[dex.getInt(0x38)];
+    stringIdsOffset = dex.getInt(0x3c);
+    typeIdsOffset = dex.getInt(0x44);
+    protoIdsOffset = dex.getInt(0x4c);
+    fieldIdsOffset = dex.getInt(0x54);
+    methodIdsOffset = dex.getInt(0x5c);
+    classDefsSize = dex.getInt(0x60);
+    classDefsOffset = dex.getInt(0x64);
+  }
+
+
+  String getString(int stringIndex) {
+    String string = strings[stringIndex];
+
+    if(string == null) {
+      int[] position = { dex.getInt(stringIdsOffset + stringIndex * 4) };
+      int utf16Length = readUleb128(position);
+
+      string = decodeMutf8(position[0], utf16Length);
+      strings[stringIndex] = string;
+    }
+
+    return string;
+  }
+
+
+  String getTypeDescriptor(int typeIndex) {
+    return getString(dex.getInt(typeIdsOffset + typeIndex * 4));
+  }
+
+
+  String getMethodName(int methodIndex) {
+    return getString(dex.getInt(methodIdsOffset + methodIndex * 8 + 4));
+  }
+
+
+  String getMethodClassDescriptor(int methodIndex) {
+    return getTypeDescriptor(dex.getShort(methodIdsOffset + methodIndex * 8) & 0xffff);
+  }
+
+
+  /**
+   * Returns return type followed by parameter types of the method, all as type descriptors.
+   */
+  String[] getMethodPrototype(int methodIndex) {
+    int protoOffset = protoIdsOffset + (dex.getShort(methodIdsOffset + methodIndex * 8 + 2) & 0xffff) * 12;
+    int parametersOffset = dex.getInt(protoOffset + 8);
+    int parameterCount = parametersOffset == 0 ? 0 : dex.getInt(parametersOffset);
+
+    String[] prototype = new String[parameterCount + 1];
+    prototype[0] = getTypeDescriptor(dex.getInt(protoOffset + 4));
+
+    for(int i = 0; i < parameterCount; i++) {
+      prototype[i + 1] = getTypeDescriptor(dex.getShort(parametersOffset + 4 + i * 2) & 0xffff);
+    }
+
+    return prototype;
+  }
+
+
+  String getFieldClassDescriptor(int fieldIndex) {
+    return getTypeDescriptor(dex.getShort(fieldIdsOffset + fieldIndex * 8) & 0xffff);
+  }
+
+
+  String getFieldTypeDescriptor(int fieldIndex) {
+    return getTypeDescriptor(dex.getShort(fieldIdsOffset + fieldIndex * 8 + 2) & 0xffff);
+  }
+
+
+  String getFieldName(int fieldIndex) {
+    return getString(dex.getInt(fieldIdsOffset + fieldIndex * 8 + 4));
+  }
+
+
+  /**
+   * Visits the direct and virtual methods of every class whose descriptor is in the given set.
+   */
+  void visitMethods(Set<String> classDescriptors, MethodVisitor methodVisitor) {
+    for(int i = 0; i < classDefsSize; i++) {
+      int classDefOffset = classDefsOffset + i * 32;
+      String classDescriptor = getTypeDescriptor(dex.getInt(classDefOffset));
+
+      if(!classDescriptors.contains(classDescriptor)) {
+        continue;
+      }
+
+      int classDataOffset = dex.getInt(classDefOffset + 24);
+
+      if(classDataOffset == 0) {
+        continue;
+      }
+
+      int[] position = { classDataOffset };
+      int staticFieldsSize = readUleb128(position);
+      int instanceFieldsSize = readUleb128(position);
+      int directMethodsSize = readUleb128(position);
+      int virtualMethodsSize = readUleb128(position);
+
+      for(int j = 0; j < (staticFieldsSize + instanceFieldsSize) * 2; j++) {
+        readUleb128(position);
+      }
+
+      visitMethodList(classDescriptor, position, directMethodsSize, methodVisitor);
+      visitMethodList(classDescriptor, position, virtualMethodsSize, methodVisitor);
+    }
+  }
+
+
+  private void visitMethodList(String classDescriptor, int[] position, int methodsSize, MethodVisitor methodVisitor) {
+    int methodIndex = 0;
+
+    for(int i = 0; i < methodsSize; i++) {
+      methodIndex += readUleb128(position);
+
+      int accessFlags = readUleb128(position);
+      int codeOffset = readUleb128(position);
+
+      methodVisitor.visitMethod(classDescriptor, methodIndex, accessFlags, codeOffset);
+    }
+  }
+
+
+  /**
+   * Walks the instructions of a code item and reports every string, type, field and method reference.
+   *
+   * @return number of instructions
+   */
+  int visitInstructions(int codeOffset, ReferenceVisitor referenceVisitor) {
+    int position = codeOffset + 16;
+    int end = position + dex.getInt(codeOffset + 12) * 2;
+    int instructionCount = 0;
+
+    while(position < end) {
+      int codeUnit = dex.getShort(position) & 0xffff;
+      int opcode = codeUnit & 0xff;
+      int width;
+
+      if(opcode == 0x00 && codeUnit != 0) {
+        width = getPayloadWidth(position, codeUnit);
+      }
+      else {
+        width = OPCODE_WIDTHS[opcode];
+        instructionCount++;
+
+        visitReference(position, opcode, referenceVisitor);
+      }
+
+      position += width * 2;
+    }
+
+    return instructionCount;
+  }
+
+
+  private void visitReference(int position, int opcode, ReferenceVisitor referenceVisitor) {
+    if(opcode == 0x1a) {
+      referenceVisitor.visitString(getString(dex.getShort(position + 2) & 0xffff));
+    }
+    else if(opcode == 0x1b) {
+      referenceVisitor.visitString(getString(dex.getInt(position + 2)));
+    }
+    else if(opcode == 0x1c || opcode == 0x1f || opcode == 0x20 || opcode == 0x22 || opcode == 0x23 || opcode == 0x24 || opcode == 0x25) {
+      referenceVisitor.visitType(getTypeDescriptor(dex.getShort(position + 2) & 0xffff));
+    }
+    else if(opcode >= 0x52 && opcode <= 0x6d) {
+      referenceVisitor.visitField(opcode, dex.getShort(position + 2) & 0xffff);
+    }
+    else if((opcode >= 0x6e && opcode <= 0x72) || (opcode >= 0x74 && opcode <= 0x78) || opcode == 0xfa || opcode == 0xfb) {
+      referenceVisitor.visitMethod(opcode, dex.getShort(position + 2) & 0xffff);
+    }
+  }
+
+
+  private int getPayloadWidth(int position, int identifier) {
+    switch(identifier) {
+      case 0x0100:
+        return (dex.getShort(position + 2) & 0xffff) * 2 + 4;
+
+      case 0x0200:
+        return (dex.getShort(position + 2) & 0xffff) * 4 + 2;
+
+      case 0x0300:
+        long elementWidth = dex.getShort(position + 2) & 0xffff;
+        long elementCount = dex.getInt(position + 4) & 0xffffffffL;
+        return (int)((elementWidth * elementCount + 1) / 2 + 4);
+
+      default:
+        return 1;
+    }
+  }
+
+
+  private int readUleb128(int[] position) {
+    int result = 0;
+    int shift = 0;
+    int currentByte;
+
+    do {
+      currentByte = dex.get(position[0]++) & 0xff;
+      result |= (currentByte & 0x7f) << shift;
+      shift += 7;
+    }
+    while((currentByte & 0x80) != 0 && shift < 35);
+
+    return result;
+  }
+
+
+  private String decodeMutf8(int position, int utf16Length) {
+    char[] characters = new char[utf16Length];
+
+    for(int i = 0; i < utf16Length; i++) {
+      int first = dex.get(position++) & 0xff;
+
+      if(first < 0x80) {
+        characters[i] = (char)first;
+      }
+      else if((first & 0xe0) == 0xc0) {
+        characters[i] = (char)(((first & 0x1f) << 6) | (dex.get(position++) & 0x3f));
+      }
+      else {
+        int second = dex.get(position++) & 0x3f;
+        characters[i] = (char)(((first & 0x0f) << 12) | (second << 6) | (dex.get(position++) & 0x3f));
+      }
+    }
+
+    return new String(characters);
+  }
+
+}
@@ -0,0 +1,197 @@
+package org.bambi.overwatch.hookmapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Maps the obfuscated names of the module's hook targets across Nova Launcher builds.
+ *
+ * <p>The targets are fingerprinted in a reference APK whose names are known, every other APK is indexed in parallel
+ * on a fork-join pool and each target is matched to the most similar method with the same masked prototype in the
+ * same class. The result is written as a mapping table the module bundles in its assets:
+ *
+ * <pre>
+ * &lt;classes.dex CRC32&gt; &lt;target id&gt; &lt;method name&gt;
+ * </pre>
+ */
+public final class HookMapper {
+
+  private static final double DEFAULT_MIN_SIMILARITY = 0.6;
+  private static final double AMBIGUITY_MARGIN = 0.02;
+
+
+  private static void usage() {
+    System.err.println("Usage: hookmapper --reference <apk> --output <file> [--targets <file>] [--min-similarity <0..1>] <apk or directory>...");
+    System.exit(2);
+  }
+
+
+  public static void main(String[] args) throws Exception {
+    Path referenceApk = null;
+    Path outputFile = null;
+    Path targetsFile = null;
+    double minSimilarity = DEFAULT_MIN_SIMILARITY;
+    List<Path> inputs = new ArrayList<>();
+
+    for(int i = 0; i < args.length; i++) {
+      switch(args[i]) {
+        case "--reference": referenceApk = Paths.get(args[++i]); break;
+        case "--output": outputFile = Paths.get(args[++i]); break;
+        case "--targets": targetsFile = Paths.get(args[++i]); break;
+        case "--min-similarity": minSimilarity = Double.parseDouble(args[++i]); break;
+        default: inputs.add(Paths.get(args[i])); break;
+      }
+    }
+
+    if(referenceApk == null || outputFile == null) {
+      usage();
+    }
+
+    List<HookTarget> targets = targetsFile != null ? HookTarget.readTargets(targetsFile) : HookTarget.DEFAULT_TARGETS;
+    List<Path> apkFiles = collectApkFiles(inputs);
+
+    long startTime = System.nanoTime();
+
+    Set<String> classDescriptors = new HashSet<>();
+
+    for(HookTarget target : targets) {
+      classDescriptors.add(target.classDescriptor);
+    }
+
+    ApkIndex referenceIndex = ApkIndex.scan(referenceApk, classDescriptors);
+    List<MethodFingerprint> referenceFingerprints = new ArrayList<>();
+
+    for(HookTarget target : targets) {
+      referenceFingerprints.add(findReference(referenceIndex, target));
+    }
+
+    List<ApkIndex> apkIndexes = scanAll(apkFiles, classDescriptors);
+
+    try(BufferedWriter writer = Files.newBufferedWriter(outputFile, StandardCharsets.UTF_8)) {
+      writer.write("# Generated by hookmapper, <classes.dex CRC32> <target id> <method name>\n");
+
+      for(ApkIndex apkIndex : apkIndexes) {
+        writer.write("# " + apkIndex.apkFile.getFileName() + "\n");
+
+        for(int i = 0; i < targets.size(); i++) {
+          String methodName = match(apkIndex, targets.get(i), referenceFingerprints.get(i), minSimilarity);
+
+          if(methodName != null) {
+            writer.write(apkIndex.key + " " + targets.get(i).id + " " + methodName + "\n");
+          }
+        }
+      }
+    }
+
+    System.err.printf("Mapped %d targets in %d APKs in %d ms%n",
+        targets.size(), apkIndexes.size(), (System.nanoTime() - startTime) / 1000000L);
+  }
+
+
+  private static List<Path> collectApkFiles(List<Path> inputs) throws IOException {
+    List<Path> apkFiles = new ArrayList<>();
+
+    for(Path input : inputs) {
+      if(Files.isDirectory(input)) {
+        try(Stream<Path> files = Files.walk(input)) {
+          apkFiles.addAll(files
+              .filter(file -> file.getFileName().toString().endsWith(".apk"))
+              .collect(Collectors.toList()));
+        }
+      }
+      else {
+        apkFiles.add(input);
+      }
+    }
+
+    Collections.sort(apkFiles);
+
+    return apkFiles;
+  }
+
+
+  private static List<ApkIndex> scanAll(List<Path> apkFiles, Set<String> classDescriptors) {
+    List<ApkIndex.ScanTask> scanTasks = new ArrayList<>();
+
+    for(Path apkFile : apkFiles) {
+      scanTasks.add(new ApkIndex.ScanTask(apkFile, classDescriptors));
+    }
+
+    ForkJoinPool forkJoinPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    try {
+      forkJoinPool.submit(() -> ForkJoinTask.invokeAll(scanTasks)).join();
+    }
+    finally {
+      forkJoinPool.shutdown();
+    }
+
+    List<ApkIndex> apkIndexes = new ArrayList<>();
+
+    for(ApkIndex.ScanTask scanTask : scanTasks) {
+      if(scanTask.getRawResult() != null) {
+        apkIndexes.add(scanTask.getRawResult());
+      }
+    }
+
+    return apkIndexes;
+  }
+
+
+  private static MethodFingerprint findReference(ApkIndex referenceIndex, HookTarget target) {
+    for(MethodFingerprint fingerprint : referenceIndex.getMethods(target.classDescriptor)) {
+      if(fingerprint.methodName.equals(target.methodName) && target.matchesParameters(fingerprint.prototype)) {
+        return fingerprint;
+      }
+    }
+
+    throw new IllegalArgumentException("Target " + target.id + " not found in reference APK " + referenceIndex.apkFile);
+  }
+
+
+  private static String match(ApkIndex apkIndex, HookTarget target, MethodFingerprint reference, double minSimilarity) {
+    MethodFingerprint bestMatch = null;
+    double bestSimilarity = 0.0;
+    double secondSimilarity = 0.0;
+
+    for(MethodFingerprint candidate : apkIndex.getMethods(target.classDescriptor)) {
+      double similarity = reference.similarity(candidate);
+
+      if(similarity > bestSimilarity) {
+        secondSimilarity = bestSimilarity;
+        bestSimilarity = similarity;
+        bestMatch = candidate;
+      }
+      else if(similarity > secondSimilarity) {
+        secondSimilarity = similarity;
+      }
+    }
+
+    if(bestMatch == null || bestSimilarity < minSimilarity) {
+      System.err.printf("%s: no match for %s (best similarity %.2f)%n", apkIndex.apkFile.getFileName(), target.id, bestSimilarity);
+      return null;
+    }
+
+    if(bestSimilarity - secondSimilarity < AMBIGUITY_MARGIN) {
+      System.err.printf("%s: ambiguous match for %s (%.2f vs %.2f), skipped%n",
+          apkIndex.apkFile.getFileName(), target.id, bestSimilarity, secondSimilarity);
+      return null;
+    }
+
+    return bestMatch.methodName;
+  }
+
+}
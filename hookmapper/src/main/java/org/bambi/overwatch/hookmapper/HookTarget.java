@@ -0,0 +1,109 @@
+package org.bambi.overwatch.hookmapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Method hooked by the module, identified by a stable id and its name and signature in the reference APK.
+ */
+final class HookTarget {
+
+  /**
+   * Hook targets of {@code NovaLauncherHooks}, ids have to match the ones used by the module.
+   */
+  static final List<HookTarget> DEFAULT_TARGETS = Arrays.asList(
+      new HookTarget("AppSearchView.show", "com.teslacoilsw.launcher.AppSearchView", "eN", "int", "int", "int"),
+      new HookTarget("AppSearchView.hide", "com.teslacoilsw.launcher.AppSearchView", "eN", "int"),
+      new HookTarget("AppSearchView.toggleKeyboard", "com.teslacoilsw.launcher.AppSearchView", "fb"),
+      new HookTarget("Launcher.showAppSearchView", "com.android.launcher3.Launcher", "eN", "android.view.View", "boolean", "int", "int"));
+
+
+  final String id;
+  final String classDescriptor;
+  final String methodName;
+  final String[] parameterDescriptors;
+
+
+  HookTarget(String id, String className, String methodName, String... parameterTypeNames) {
+    this.id = id;
+    this.classDescriptor = toDescriptor(className);
+    this.methodName = methodName;
+    this.parameterDescriptors = new String[parameterTypeNames.length];
+
+    for(int i = 0; i < parameterTypeNames.length; i++) {
+      parameterDescriptors[i] = toDescriptor(parameterTypeNames[i]);
+    }
+  }
+
+
+  /**
+   * Reads targets from a file with one {@code <id> <class> <method> [<parameter type> ...]} line per target.
+   */
+  static List<HookTarget> readTargets(Path targetsFile) throws IOException {
+    List<HookTarget> targets = new ArrayList<>();
+
+    try(BufferedReader reader = Files.newBufferedReader(targetsFile, StandardCharsets.UTF_8)) {
+      String line;
+
+      while((line = reader.readLine()) != null) {
+        line = line.trim();
+
+        if(line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+
+        String[] tokens = line.split("\\s+");
+
+        if(tokens.length < 3) {
+          throw new IOException("Invalid target definition: " + line);
+        }
+
+        targets.add(new HookTarget(tokens[0], tokens[1], tokens[2], Arrays.copyOfRange(tokens, 3, tokens.length)));
+      }
+    }
+
+    return targets;
+  }
+
+
+  boolean matchesParameters(String[] prototype) {
+    if(prototype.length - 1 != parameterDescriptors.length) {
+      return false;
+    }
+
+    for(int i = 0; i < parameterDescriptors.length; i++) {
+      if(!parameterDescriptors[i].equals(prototype[i + 1])) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+
+  static String toDescriptor(String typeName) {
+    if(typeName.endsWith("[]")) {
+      return "[" + toDescriptor(typeName.substring(0, typeName.length() - 2));
+    }
+
+    switch(typeName) {
+      case "void": return "V";
+      case "boolean": return "Z";
+      case "byte": return "B";
+      case "short": return "S";
+      case "char": return "C";
+      case "int": return "I";
+      case "long": return "J";
+      case "float": return "F";
+      case "double": return "D";
+      default: return "L" + typeName.replace('.', '/') + ";";
+    }
+  }
+
+}
@@ -0,0 +1,206 @@
+package org.bambi.overwatch.hookmapper;
+
+import java.util.Arrays;
+
+/**
+ * Obfuscation independent summary of a method: its prototype with obfuscated types masked and the set of strings,
+ * types, fields and methods its code references.
+ */
+final class MethodFingerprint {
+
+  private static final String[] FRAMEWORK_PACKAGES = {
+      "Landroid/", "Ljava/", "Ljavax/", "Ldalvik/", "Lkotlin/", "Lorg/json/", "Lorg/xmlpull/", "Lorg/w3c/"
+  };
+
+  private static final int MAX_OBFUSCATED_NAME_LENGTH = 3;
+
+
+  final String methodName;
+  final String[] prototype;
+  final String maskedPrototype;
+  final int accessFlags;
+  final int instructionCount;
+  final int[] features;
+
+
+  private MethodFingerprint(String methodName, String[] prototype, int accessFlags, int instructionCount, int[] features) {
+    this.methodName = methodName;
+    this.prototype = prototype;
+    this.maskedPrototype = maskPrototype(prototype);
+    this.accessFlags = accessFlags;
+    this.instructionCount = instructionCount;
+    this.features = features;
+  }
+
+
+  static MethodFingerprint create(final DexReader dexReader, int methodIndex, int accessFlags, int codeOffset) {
+    final int[][] features = { new int[64] };
+    final int[] featureCount = { 0 };
+
+    int instructionCount = codeOffset == 0 ? 0 : dexReader.visitInstructions(codeOffset, new DexReader.ReferenceVisitor() {
+      @Override
+      public void visitString(String string) {
+        add("s:" + string);
+      }
+
+      @Override
+      public void visitType(String typeDescriptor) {
+        add("t:" + maskType(typeDescriptor));
+      }
+
+      @Override
+      public void visitField(int opcode, int fieldIndex) {
+        String classDescriptor = dexReader.getFieldClassDescriptor(fieldIndex);
+
+        add("f" + (opcode >= 0x60 ? "s:" : "i:") +
+            maskType(classDescriptor) + "." +
+            maskMemberName(classDescriptor, dexReader.getFieldName(fieldIndex)) + ":" +
+            maskType(dexReader.getFieldTypeDescriptor(fieldIndex)));
+      }
+
+      @Override
+      public void visitMethod(int opcode, int methodIndex) {
+        String classDescriptor = dexReader.getMethodClassDescriptor(methodIndex);
+
+        add("m:" +
+            maskType(classDescriptor) + "." +
+            maskMemberName(classDescriptor, dexReader.getMethodName(methodIndex)) +
+            maskPrototype(dexReader.getMethodPrototype(methodIndex)));
+      }
+
+      private void add(String feature) {
+        if(featureCount[0] == features[0].length) {
+          features[0] = Arrays.copyOf(features[0], featureCount[0] * 2);
+        }
+
+        features[0][featureCount[0]++] = feature.hashCode();
+      }
+    });
+
+    return new MethodFingerprint(
+        dexReader.getMethodName(methodIndex),
+        dexReader.getMethodPrototype(methodIndex),
+        accessFlags,
+        instructionCount,
+        toSortedSet(features[0], featureCount[0]));
+  }
+
+
+  /**
+   * Similarity in range 0 to 1, dominated by the overlap of referenced strings, types, fields and methods.
+   */
+  double similarity(MethodFingerprint other) {
+    if(!maskedPrototype.equals(other.maskedPrototype)) {
+      return 0.0;
+    }
+
+    double sizeSimilarity = instructionCount == 0 && other.instructionCount == 0
+        ? 1.0
+        : 1.0 - (double)Math.abs(instructionCount - other.instructionCount) / Math.max(instructionCount, other.instructionCount);
+
+    double accessSimilarity = accessFlags == other.accessFlags ? 1.0 : 0.0;
+
+    return jaccard(features, other.features) * 0.8 + sizeSimilarity * 0.15 + accessSimilarity * 0.05;
+  }
+
+
+  private static double jaccard(int[] first, int[] second) {
+    if(first.length == 0 && second.length == 0) {
+      return 1.0;
+    }
+
+    int i = 0;
+    int j = 0;
+    int intersection = 0;
+
+    while(i < first.length && j < second.length) {
+      if(first[i] == second[j]) {
+        intersection++;
+        i++;
+        j++;
+      }
+      else if(first[i] < second[j]) {
+        i++;
+      }
+      else {
+        j++;
+      }
+    }
+
+    return (double)intersection / (first.length + second.length - intersection);
+  }
+
+
+  private static int[] toSortedSet(int[] values, int count) {
+    if(count == 0) {
+      return new int[0];
+    }
+
+    Arrays.sort(values, 0, count);
+
+    int distinctCount = 1;
+
+    for(int i = 1; i < count; i++) {
+      if(values[i] != values[distinctCount - 1]) {
+        values[distinctCount++] = values[i];
+      }
+    }
+
+    return Arrays.copyOf(values, distinctCount);
+  }
+
+
+  static String maskPrototype(String[] prototype) {
+    StringBuilder maskedPrototype = new StringBuilder("(");
+
+    for(int i = 1; i < prototype.length; i++) {
+      maskedPrototype.append(maskType(prototype[i]));
+    }
+
+    return maskedPrototype.append(')').append(maskType(prototype[0])).toString();
+  }
+
+
+  static String maskType(String typeDescriptor) {
+    int dimensions = 0;
+
+    while(typeDescriptor.charAt(dimensions) == '[') {
+      dimensions++;
+    }
+
+    if(typeDescriptor.charAt(dimensions) != 'L' || isFrameworkType(typeDescriptor, dimensions)) {
+      return typeDescriptor;
+    }
+
+    String simpleName = typeDescriptor.substring(typeDescriptor.lastIndexOf('/') + 1, typeDescriptor.length() - 1);
+    int innerClassSeparator = simpleName.lastIndexOf('$');
+
+    if(simpleName.length() - innerClassSeparator - 1 > MAX_OBFUSCATED_NAME_LENGTH &&
+       (innerClassSeparator < 0 || innerClassSeparator > MAX_OBFUSCATED_NAME_LENGTH)) {
+      return typeDescriptor;
+    }
+
+    return typeDescriptor.substring(0, dimensions) + "L?;";
+  }
+
+
+  static String maskMemberName(String classDescriptor, String memberName) {
+    if(memberName.startsWith("<") || memberName.length() > MAX_OBFUSCATED_NAME_LENGTH || isFrameworkType(classDescriptor, 0)) {
+      return memberName;
+    }
+
+    return "?";
+  }
+
+
+  private static boolean isFrameworkType(String typeDescriptor, int offset) {
+    for(String frameworkPackage : FRAMEWORK_PACKAGES) {
+      if(typeDescriptor.startsWith(frameworkPackage, offset)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+}
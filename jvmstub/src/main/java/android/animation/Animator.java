@@ -0,0 +1,77 @@
+package android.animation;
+
+import java.util.ArrayList;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name. No frames run, a started animator only ends through
+ * {@link #end()}, which runs its end listeners.
+ */
+public abstract class Animator {
+
+  public interface AnimatorListener {
+    void onAnimationStart(Animator animation);
+
+    void onAnimationEnd(Animator animation);
+
+    void onAnimationCancel(Animator animation);
+
+    void onAnimationRepeat(Animator animation);
+  }
+
+
+  private boolean running;
+  private ArrayList<AnimatorListener> listeners;
+
+
+  public void start() {
+    running = true;
+  }
+
+
+  public void end() {
+    if(!running) {
+      return;
+    }
+
+    running = false;
+
+    if(listeners != null) {
+      for(AnimatorListener listener : new ArrayList<>(listeners)) {
+        listener.onAnimationEnd(this);
+      }
+    }
+  }
+
+
+  public void cancel() {
+    running = false;
+  }
+
+
+  public boolean isRunning() {
+    return running;
+  }
+
+
+  public void addListener(AnimatorListener listener) {
+    if(listeners == null) {
+      listeners = new ArrayList<>();
+    }
+
+    listeners.add(listener);
+  }
+
+
+  public void removeListener(AnimatorListener listener) {
+    if(listeners != null) {
+      listeners.remove(listener);
+    }
+  }
+
+
+  public abstract Animator setDuration(long duration);
+
+
+  public abstract long getDuration();
+
+}
@@ -0,0 +1,27 @@
+package android.animation;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name.
+ */
+public abstract class AnimatorListenerAdapter implements Animator.AnimatorListener {
+
+  @Override
+  public void onAnimationStart(Animator animation) {
+  }
+
+
+  @Override
+  public void onAnimationEnd(Animator animation) {
+  }
+
+
+  @Override
+  public void onAnimationCancel(Animator animation) {
+  }
+
+
+  @Override
+  public void onAnimationRepeat(Animator animation) {
+  }
+
+}
@@ -0,0 +1,137 @@
+package android.animation;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+
+import de.robv.android.xposed.XposedBridge;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name. Starting a set starts its children right away, ending
+ * it ends them; {@code start}, {@code playTogether} and {@code playSequentially} can be hooked.
+ */
+public final class AnimatorSet extends Animator {
+
+  /**
+   * Stand-in only plays the animators together, whatever the Android builder orders.
+   */
+  public class Builder {
+    Builder() {
+    }
+
+
+    public Builder with(Animator animator) {
+      childAnimations.add(animator);
+      return this;
+    }
+  }
+
+
+  private static final Method START = XposedBridge.getDeclaredMethod(AnimatorSet.class, "start");
+  private static final Method PLAY_TOGETHER = XposedBridge.getDeclaredMethod(AnimatorSet.class, "playTogether", Animator[].class);
+  private static final Method PLAY_TOGETHER_COLLECTION = XposedBridge.getDeclaredMethod(AnimatorSet.class, "playTogether", Collection.class);
+  private static final Method PLAY_SEQUENTIALLY = XposedBridge.getDeclaredMethod(AnimatorSet.class, "playSequentially", Animator[].class);
+
+  private static final Object[] NO_ARGUMENTS = new Object[0];
+
+  private static final XposedBridge.OriginalMethod START_ORIGINAL = new XposedBridge.OriginalMethod() {
+    @Override
+    public Object invoke(Object thisObject, Object[] args) {
+      ((AnimatorSet)thisObject).startChildren();
+      return null;
+    }
+  };
+
+  private static final XposedBridge.OriginalMethod PLAY_ORIGINAL = new XposedBridge.OriginalMethod() {
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object invoke(Object thisObject, Object[] args) {
+      if(args[0] instanceof Animator[]) {
+        Collections.addAll(((AnimatorSet)thisObject).childAnimations, (Animator[])args[0]);
+      }
+      else {
+        ((AnimatorSet)thisObject).childAnimations.addAll((Collection<Animator>)args[0]);
+      }
+      return null;
+    }
+  };
+
+  private final ArrayList<Animator> childAnimations = new ArrayList<>();
+  private long duration = -1L;
+
+
+  public void playTogether(Animator... animators) {
+    XposedBridge.invokeHookedUnchecked(PLAY_TOGETHER, this, new Object[] { animators }, PLAY_ORIGINAL);
+  }
+
+
+  public void playTogether(Collection<Animator> animators) {
+    XposedBridge.invokeHookedUnchecked(PLAY_TOGETHER_COLLECTION, this, new Object[] { animators }, PLAY_ORIGINAL);
+  }
+
+
+  public Builder play(Animator animator) {
+    childAnimations.add(animator);
+    return new Builder();
+  }
+
+
+  public void playSequentially(Animator... animators) {
+    XposedBridge.invokeHookedUnchecked(PLAY_SEQUENTIALLY, this, new Object[] { animators }, PLAY_ORIGINAL);
+  }
+
+
+  /**
+   * Returns a copy, like the Android implementation.
+   */
+  public ArrayList<Animator> getChildAnimations() {
+    return new ArrayList<>(childAnimations);
+  }
+
+
+  @Override
+  public void start() {
+    XposedBridge.invokeHookedUnchecked(START, this, NO_ARGUMENTS, START_ORIGINAL);
+  }
+
+
+  private void startChildren() {
+    super.start();
+
+    for(Animator childAnimation : childAnimations) {
+      if(duration >= 0L) {
+        childAnimation.setDuration(duration);
+      }
+
+      childAnimation.start();
+    }
+  }
+
+
+  /**
+   * Ends the children first, then the set, like the Android implementation.
+   */
+  @Override
+  public void end() {
+    for(Animator childAnimation : childAnimations) {
+      childAnimation.end();
+    }
+
+    super.end();
+  }
+
+
+  @Override
+  public AnimatorSet setDuration(long duration) {
+    this.duration = duration;
+    return this;
+  }
+
+
+  @Override
+  public long getDuration() {
+    return duration;
+  }
+
+}
@@ -0,0 +1,13 @@
+package android.animation;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, evaluates to the start or end value only.
+ */
+public class ArgbEvaluator implements TypeEvaluator {
+
+  @Override
+  public Object evaluate(float fraction, Object startValue, Object endValue) {
+    return fraction < 1f ? startValue : endValue;
+  }
+
+}
@@ -0,0 +1,96 @@
+package android.animation;
+
+import java.lang.reflect.Method;
+
+import de.robv.android.xposed.XposedBridge;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name. The factory methods can be hooked.
+ */
+public final class ObjectAnimator extends ValueAnimator {
+
+  private static final Method OF_INT = XposedBridge.getDeclaredMethod(ObjectAnimator.class, "ofInt", Object.class, String.class, int[].class);
+  private static final Method OF_ARGB = XposedBridge.getDeclaredMethod(ObjectAnimator.class, "ofArgb", Object.class, String.class, int[].class);
+
+  private static final XposedBridge.OriginalMethod CREATE = new XposedBridge.OriginalMethod() {
+    @Override
+    public Object invoke(Object thisObject, Object[] args) {
+      ObjectAnimator animator = new ObjectAnimator();
+      animator.target = args[0];
+      animator.propertyName = (String)args[1];
+      animator.setIntValues((int[])args[2]);
+      return animator;
+    }
+  };
+
+  private Object target;
+  private String propertyName;
+
+
+  public static ObjectAnimator ofInt(Object target, String propertyName, int... values) {
+    return (ObjectAnimator)XposedBridge.invokeHookedUnchecked(OF_INT, null, new Object[] { target, propertyName, values }, CREATE);
+  }
+
+
+  public static ObjectAnimator ofArgb(Object target, String propertyName, int... values) {
+    return (ObjectAnimator)XposedBridge.invokeHookedUnchecked(OF_ARGB, null, new Object[] { target, propertyName, values }, CREATE);
+  }
+
+
+  /**
+   * Stand-in only takes {@code Integer} values.
+   */
+  public static ObjectAnimator ofObject(Object target, String propertyName, TypeEvaluator evaluator, Object... values) {
+    int[] intValues = new int[values.length];
+
+    for(int i = 0; i < values.length; i++) {
+      intValues[i] = (Integer)values[i];
+    }
+
+    ObjectAnimator animator = new ObjectAnimator();
+    animator.target = target;
+    animator.propertyName = propertyName;
+    animator.setIntValues(intValues);
+    return animator;
+  }
+
+
+  /**
+   * Stand-in only takes the first holder.
+   */
+  public static ObjectAnimator ofPropertyValuesHolder(Object target, PropertyValuesHolder... values) {
+    ObjectAnimator animator = new ObjectAnimator();
+    animator.target = target;
+    animator.propertyName = values[0].getPropertyName();
+    animator.setIntValues(values[0].getIntValues());
+    return animator;
+  }
+
+
+  public void setTarget(Object target) {
+    this.target = target;
+  }
+
+
+  public void setPropertyName(String propertyName) {
+    this.propertyName = propertyName;
+  }
+
+
+  public Object getTarget() {
+    return target;
+  }
+
+
+  public String getPropertyName() {
+    return propertyName;
+  }
+
+
+  @Override
+  public ObjectAnimator setDuration(long duration) {
+    super.setDuration(duration);
+    return this;
+  }
+
+}
@@ -0,0 +1,35 @@
+package android.animation;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, it only keeps its property name and values.
+ */
+public class PropertyValuesHolder {
+
+  private final String propertyName;
+  private final int[] intValues;
+
+
+  private PropertyValuesHolder(String propertyName, int[] intValues) {
+    this.propertyName = propertyName;
+    this.intValues = intValues;
+  }
+
+
+  public static PropertyValuesHolder ofInt(String propertyName, int... values) {
+    return new PropertyValuesHolder(propertyName, values.clone());
+  }
+
+
+  public String getPropertyName() {
+    return propertyName;
+  }
+
+
+  /**
+   * Stand-in only: values given to {@link #ofInt}.
+   */
+  int[] getIntValues() {
+    return intValues;
+  }
+
+}
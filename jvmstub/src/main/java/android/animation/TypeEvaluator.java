@@ -0,0 +1,10 @@
+package android.animation;
+
+/**
+ * Plain JVM stand-in for the Android interface of the same name.
+ */
+public interface TypeEvaluator<T> {
+
+  T evaluate(float fraction, T startValue, T endValue);
+
+}
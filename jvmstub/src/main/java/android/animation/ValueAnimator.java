@@ -0,0 +1,44 @@
+package android.animation;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, it only keeps its values and duration.
+ */
+public class ValueAnimator extends Animator {
+
+  private int[] intValues;
+  private long duration = 300L;
+
+
+  public static ValueAnimator ofInt(int... values) {
+    ValueAnimator animator = new ValueAnimator();
+    animator.setIntValues(values);
+    return animator;
+  }
+
+
+  public void setIntValues(int... values) {
+    intValues = values.clone();
+  }
+
+
+  /**
+   * Stand-in only: values set by {@link #setIntValues}.
+   */
+  public int[] getIntValues() {
+    return intValues;
+  }
+
+
+  @Override
+  public ValueAnimator setDuration(long duration) {
+    this.duration = duration;
+    return this;
+  }
+
+
+  @Override
+  public long getDuration() {
+    return duration;
+  }
+
+}
@@ -0,0 +1,10 @@
+package android.content;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name.
+ */
+public abstract class BroadcastReceiver {
+
+  public abstract void onReceive(Context context, Intent intent);
+
+}
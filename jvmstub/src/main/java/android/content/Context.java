@@ -0,0 +1,39 @@
+package android.content;
+
+import android.os.Handler;
+
+import java.io.File;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, subclasses provide the directories.
+ */
+public abstract class Context {
+
+  public Context getApplicationContext() {
+    return this;
+  }
+
+
+  public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter) {
+    return null;
+  }
+
+
+  public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter, String broadcastPermission, Handler scheduler) {
+    return null;
+  }
+
+
+  public abstract File getDataDir();
+
+
+  public File getCacheDir() {
+    return new File(getDataDir(), "cache");
+  }
+
+
+  public File getFilesDir() {
+    return new File(getDataDir(), "files");
+  }
+
+}
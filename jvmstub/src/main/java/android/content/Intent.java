@@ -0,0 +1,41 @@
+package android.content;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, only boolean extras are kept.
+ */
+public class Intent {
+
+  private final String action;
+  private final Map<String, Boolean> booleanExtras = new HashMap<>();
+
+
+  public Intent(String action) {
+    this.action = action;
+  }
+
+
+  public String getAction() {
+    return action;
+  }
+
+
+  public Intent putExtra(String name, boolean value) {
+    booleanExtras.put(name, value);
+    return this;
+  }
+
+
+  public boolean hasExtra(String name) {
+    return booleanExtras.containsKey(name);
+  }
+
+
+  public boolean getBooleanExtra(String name, boolean defaultValue) {
+    Boolean value = booleanExtras.get(name);
+    return value != null ? value : defaultValue;
+  }
+
+}
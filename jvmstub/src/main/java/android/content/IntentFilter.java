@@ -0,0 +1,20 @@
+package android.content;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name.
+ */
+public class IntentFilter {
+
+  private final String action;
+
+
+  public IntentFilter(String action) {
+    this.action = action;
+  }
+
+
+  public boolean hasAction(String action) {
+    return this.action.equals(action);
+  }
+
+}
@@ -0,0 +1,21 @@
+package android.content;
+
+/**
+ * Plain JVM stand-in for the Android interface of the same name, reading only.
+ */
+public interface SharedPreferences {
+
+  interface OnSharedPreferenceChangeListener {
+    void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key);
+  }
+
+
+  boolean getBoolean(String key, boolean defValue);
+
+  String getString(String key, String defValue);
+
+  void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener);
+
+  void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener);
+
+}
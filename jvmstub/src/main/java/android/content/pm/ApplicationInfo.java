@@ -0,0 +1,12 @@
+package android.content.pm;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name.
+ */
+public class ApplicationInfo {
+
+  public String packageName;
+  public String sourceDir;
+  public String dataDir;
+
+}
@@ -0,0 +1,7 @@
+package android.graphics.drawable;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name.
+ */
+public class Drawable {
+}
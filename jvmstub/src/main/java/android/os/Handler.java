@@ -0,0 +1,7 @@
+package android.os;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, only used as a parameter type.
+ */
+public class Handler {
+}
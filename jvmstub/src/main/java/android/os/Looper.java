@@ -0,0 +1,41 @@
+package android.os;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, a thread has a looper once it called
+ * {@link #prepare()} and never loops.
+ */
+public final class Looper {
+
+  private static final ThreadLocal<Looper> loopers = new ThreadLocal<>();
+
+  private final MessageQueue queue = new MessageQueue();
+
+
+  private Looper() {
+  }
+
+
+  public static void prepare() {
+    if(loopers.get() != null) {
+      throw new RuntimeException("Only one Looper may be created per thread");
+    }
+
+    loopers.set(new Looper());
+  }
+
+
+  public static Looper myLooper() {
+    return loopers.get();
+  }
+
+
+  public static MessageQueue myQueue() {
+    return loopers.get().queue;
+  }
+
+
+  public MessageQueue getQueue() {
+    return queue;
+  }
+
+}
@@ -0,0 +1,53 @@
+package android.os;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name. Nothing is queued, idle handlers run when the owning
+ * thread calls {@link #idle()}.
+ */
+public final class MessageQueue {
+
+  public interface IdleHandler {
+    boolean queueIdle();
+  }
+
+
+  private final List<IdleHandler> idleHandlers = new ArrayList<>();
+
+
+  MessageQueue() {
+  }
+
+
+  public void addIdleHandler(IdleHandler handler) {
+    idleHandlers.add(handler);
+  }
+
+
+  public void removeIdleHandler(IdleHandler handler) {
+    idleHandlers.remove(handler);
+  }
+
+
+  /**
+   * Stand-in only: runs the idle handlers, the ones returning {@code false} are removed.
+   */
+  public void idle() {
+    for(IdleHandler handler : new ArrayList<>(idleHandlers)) {
+      if(!handler.queueIdle()) {
+        idleHandlers.remove(handler);
+      }
+    }
+  }
+
+
+  /**
+   * Stand-in only: number of idle handlers waiting for the next {@link #idle()}.
+   */
+  public int getIdleHandlerCount() {
+    return idleHandlers.size();
+  }
+
+}
@@ -0,0 +1,25 @@
+package android.os;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name.
+ */
+public final class Process {
+
+  private Process() {
+  }
+
+
+  public static int myPid() {
+    String runtimeName = ManagementFactory.getRuntimeMXBean().getName();
+
+    try {
+      return Integer.parseInt(runtimeName.substring(0, runtimeName.indexOf('@')));
+    }
+    catch(RuntimeException exception) {
+      return 0;
+    }
+  }
+
+}
@@ -0,0 +1,41 @@
+package android.os;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, sections are only counted.
+ */
+public final class Trace {
+
+  private static final ThreadLocal<int[]> depth = new ThreadLocal<int[]>() {
+    @Override
+    protected int[] initialValue() {
+      return new int[1];
+    }
+  };
+
+
+  private Trace() {
+  }
+
+
+  public static void beginSection(String sectionName) {
+    if(sectionName.length() > 127) {
+      throw new IllegalArgumentException("sectionName is too long");
+    }
+
+    depth.get()[0]++;
+  }
+
+
+  public static void endSection() {
+    depth.get()[0]--;
+  }
+
+
+  /**
+   * Stand-in only: number of sections open on the calling thread.
+   */
+  public static int getSectionDepth() {
+    return depth.get()[0];
+  }
+
+}
@@ -0,0 +1,37 @@
+package android.view;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, frame callbacks are never called.
+ */
+public final class Choreographer {
+
+  public interface FrameCallback {
+    void doFrame(long frameTimeNanos);
+  }
+
+
+  private static final ThreadLocal<Choreographer> instances = new ThreadLocal<Choreographer>() {
+    @Override
+    protected Choreographer initialValue() {
+      return new Choreographer();
+    }
+  };
+
+
+  private Choreographer() {
+  }
+
+
+  public static Choreographer getInstance() {
+    return instances.get();
+  }
+
+
+  public void postFrameCallback(FrameCallback callback) {
+  }
+
+
+  public void removeFrameCallback(FrameCallback callback) {
+  }
+
+}
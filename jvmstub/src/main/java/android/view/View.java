@@ -0,0 +1,302 @@
+package android.view;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name. It keeps the state the module reads and writes and
+ * counts layout requests and measure passes, nothing is really measured or drawn.
+ */
+public class View {
+
+  public static class MeasureSpec {
+    public static final int UNSPECIFIED = 0;
+    public static final int EXACTLY = 1 << 30;
+    public static final int AT_MOST = 2 << 30;
+
+    private static final int MODE_MASK = 3 << 30;
+
+    public static int makeMeasureSpec(int size, int mode) {
+      return (size & ~MODE_MASK) | (mode & MODE_MASK);
+    }
+
+    public static int getSize(int measureSpec) {
+      return measureSpec & ~MODE_MASK;
+    }
+  }
+
+
+  public static final int VISIBLE = 0;
+  public static final int INVISIBLE = 4;
+  public static final int GONE = 8;
+
+  private final Context context;
+
+  ViewParent parent;
+  private ViewGroup.LayoutParams layoutParams;
+
+  private int id = -1;
+  private int visibility = VISIBLE;
+  private float alpha = 1f;
+  private float translationX;
+  private float translationY;
+  private Drawable background;
+  private int backgroundColor;
+  private boolean focusable;
+  private boolean focusableInTouchMode;
+  private boolean layoutRequested;
+  private int layoutRequestCount;
+  private int measuredWidth;
+  private int measuredHeight;
+  private int measureCount;
+
+  private ViewTreeObserver viewTreeObserver;
+
+  private int left;
+  private int top;
+  private int right;
+  private int bottom;
+
+
+  public View(Context context) {
+    this.context = context;
+  }
+
+
+  public Context getContext() {
+    return context;
+  }
+
+
+  public final ViewParent getParent() {
+    return parent;
+  }
+
+
+  public View getRootView() {
+    View root = this;
+
+    while(root.parent instanceof View) {
+      root = (View)root.parent;
+    }
+
+    return root;
+  }
+
+
+  /**
+   * The observer of the view tree, shared by all views of the same root.
+   */
+  public ViewTreeObserver getViewTreeObserver() {
+    View root = getRootView();
+
+    if(root.viewTreeObserver == null) {
+      root.viewTreeObserver = new ViewTreeObserver();
+    }
+
+    return root.viewTreeObserver;
+  }
+
+
+  public ViewGroup.LayoutParams getLayoutParams() {
+    return layoutParams;
+  }
+
+
+  public void setLayoutParams(ViewGroup.LayoutParams layoutParams) {
+    this.layoutParams = layoutParams;
+    requestLayout();
+  }
+
+
+  public void requestLayout() {
+    layoutRequested = true;
+    layoutRequestCount++;
+
+    if(parent != null && !parent.isLayoutRequested()) {
+      parent.requestLayout();
+    }
+  }
+
+
+  public void forceLayout() {
+    layoutRequested = true;
+  }
+
+
+  public boolean isLayoutRequested() {
+    return layoutRequested;
+  }
+
+
+  /**
+   * Stand-in only: number of {@link #requestLayout()} calls which reached this view.
+   */
+  public int getLayoutRequestCount() {
+    return layoutRequestCount;
+  }
+
+
+  public final void measure(int widthMeasureSpec, int heightMeasureSpec) {
+    measuredWidth = MeasureSpec.getSize(widthMeasureSpec);
+    measuredHeight = MeasureSpec.getSize(heightMeasureSpec);
+    measureCount++;
+  }
+
+
+  public final int getMeasuredWidth() {
+    return measuredWidth;
+  }
+
+
+  public final int getMeasuredHeight() {
+    return measuredHeight;
+  }
+
+
+  /**
+   * Stand-in only: number of {@link #measure} calls of this view.
+   */
+  public int getMeasureCount() {
+    return measureCount;
+  }
+
+
+  public int getId() {
+    return id;
+  }
+
+
+  public void setId(int id) {
+    this.id = id;
+  }
+
+
+  public int getVisibility() {
+    return visibility;
+  }
+
+
+  public void setVisibility(int visibility) {
+    this.visibility = visibility;
+  }
+
+
+  public float getAlpha() {
+    return alpha;
+  }
+
+
+  public void setAlpha(float alpha) {
+    this.alpha = alpha;
+  }
+
+
+  public float getTranslationX() {
+    return translationX;
+  }
+
+
+  public void setTranslationX(float translationX) {
+    this.translationX = translationX;
+  }
+
+
+  public float getTranslationY() {
+    return translationY;
+  }
+
+
+  public void setTranslationY(float translationY) {
+    this.translationY = translationY;
+  }
+
+
+  public Drawable getBackground() {
+    return background;
+  }
+
+
+  public void setBackground(Drawable background) {
+    this.background = background;
+  }
+
+
+  public void setBackgroundColor(int color) {
+    backgroundColor = color;
+    background = new Drawable();
+  }
+
+
+  /**
+   * Stand-in only: color set by {@link #setBackgroundColor}.
+   */
+  public int getBackgroundColor() {
+    return backgroundColor;
+  }
+
+
+  public boolean isFocusable() {
+    return focusable;
+  }
+
+
+  public void setFocusable(boolean focusable) {
+    this.focusable = focusable;
+  }
+
+
+  public boolean isFocusableInTouchMode() {
+    return focusableInTouchMode;
+  }
+
+
+  public void setFocusableInTouchMode(boolean focusableInTouchMode) {
+    this.focusableInTouchMode = focusableInTouchMode;
+  }
+
+
+  public boolean isFocused() {
+    return false;
+  }
+
+
+  public final int getLeft() {
+    return left;
+  }
+
+
+  public final int getTop() {
+    return top;
+  }
+
+
+  public final int getRight() {
+    return right;
+  }
+
+
+  public final int getBottom() {
+    return bottom;
+  }
+
+
+  public final int getWidth() {
+    return right - left;
+  }
+
+
+  public final int getHeight() {
+    return bottom - top;
+  }
+
+
+  public void layout(int left, int top, int right, int bottom) {
+    this.left = left;
+    this.top = top;
+    this.right = right;
+    this.bottom = bottom;
+    this.layoutRequested = false;
+  }
+
+}
@@ -0,0 +1,67 @@
+package android.view;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name.
+ */
+public abstract class ViewGroup extends View implements ViewParent {
+
+  public static class LayoutParams {
+    public static final int MATCH_PARENT = -1;
+    public static final int WRAP_CONTENT = -2;
+
+    public int width;
+    public int height;
+
+    public LayoutParams(int width, int height) {
+      this.width = width;
+      this.height = height;
+    }
+  }
+
+  public static class MarginLayoutParams extends LayoutParams {
+    public int leftMargin;
+    public int topMargin;
+    public int rightMargin;
+    public int bottomMargin;
+
+    public MarginLayoutParams(int width, int height) {
+      super(width, height);
+    }
+  }
+
+
+  private final List<View> children = new ArrayList<>();
+
+
+  public ViewGroup(Context context) {
+    super(context);
+  }
+
+
+  public void addView(View child, LayoutParams layoutParams) {
+    if(child.parent != null) {
+      throw new IllegalStateException("The specified child already has a parent");
+    }
+
+    child.parent = this;
+    child.setLayoutParams(layoutParams);
+    children.add(child);
+    requestLayout();
+  }
+
+
+  public int getChildCount() {
+    return children.size();
+  }
+
+
+  public View getChildAt(int index) {
+    return index >= 0 && index < children.size() ? children.get(index) : null;
+  }
+
+}
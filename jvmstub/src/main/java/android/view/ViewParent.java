@@ -0,0 +1,14 @@
+package android.view;
+
+/**
+ * Plain JVM stand-in for the Android interface of the same name.
+ */
+public interface ViewParent {
+
+  ViewParent getParent();
+
+  void requestLayout();
+
+  boolean isLayoutRequested();
+
+}
@@ -0,0 +1,61 @@
+package android.view;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, one per view tree. Nothing is drawn, pre-draw listeners
+ * run when the owning thread calls {@link #dispatchOnPreDraw()}.
+ */
+public final class ViewTreeObserver {
+
+  public interface OnPreDrawListener {
+    boolean onPreDraw();
+  }
+
+
+  private final List<OnPreDrawListener> onPreDrawListeners = new ArrayList<>();
+
+
+  ViewTreeObserver() {
+  }
+
+
+  public boolean isAlive() {
+    return true;
+  }
+
+
+  public void addOnPreDrawListener(OnPreDrawListener listener) {
+    onPreDrawListeners.add(listener);
+  }
+
+
+  public void removeOnPreDrawListener(OnPreDrawListener listener) {
+    onPreDrawListeners.remove(listener);
+  }
+
+
+  /**
+   * Stand-in only: runs the pre-draw listeners in reverse order, so they can remove themselves. Returns whether the
+   * draw proceeds, i.e. no listener cancelled it.
+   */
+  public boolean dispatchOnPreDraw() {
+    boolean draw = true;
+
+    for(int i = onPreDrawListeners.size() - 1; i >= 0; i--) {
+      draw &= onPreDrawListeners.get(i).onPreDraw();
+    }
+
+    return draw;
+  }
+
+
+  /**
+   * Stand-in only: number of registered pre-draw listeners.
+   */
+  public int getOnPreDrawListenerCount() {
+    return onPreDrawListeners.size();
+  }
+
+}
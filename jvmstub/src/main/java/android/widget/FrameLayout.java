@@ -0,0 +1,15 @@
+package android.widget;
+
+import android.content.Context;
+import android.view.ViewGroup;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name.
+ */
+public class FrameLayout extends ViewGroup {
+
+  public FrameLayout(Context context) {
+    super(context);
+  }
+
+}
@@ -0,0 +1,16 @@
+package de.robv.android.xposed;
+
+/**
+ * Plain JVM stand-in for the Xposed API interface of the same name.
+ */
+public interface IXposedHookZygoteInit {
+
+  void initZygote(StartupParam startupParam) throws Throwable;
+
+
+  final class StartupParam {
+    public String modulePath;
+    public boolean startsSystemServer;
+  }
+
+}
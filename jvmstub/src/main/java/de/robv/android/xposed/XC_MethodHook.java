@@ -0,0 +1,122 @@
+package de.robv.android.xposed;
+
+import java.lang.reflect.Member;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Plain JVM stand-in for the Xposed API class of the same name.
+ */
+public abstract class XC_MethodHook {
+
+  public static final int PRIORITY_DEFAULT = 50;
+
+  protected final int priority;
+
+
+  public XC_MethodHook() {
+    this(PRIORITY_DEFAULT);
+  }
+
+
+  public XC_MethodHook(int priority) {
+    this.priority = priority;
+  }
+
+
+  protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
+  }
+
+
+  public void callBeforeHookedMethod(MethodHookParam param) throws Throwable {
+    beforeHookedMethod(param);
+  }
+
+
+  protected void afterHookedMethod(MethodHookParam param) throws Throwable {
+  }
+
+
+  public void callAfterHookedMethod(MethodHookParam param) throws Throwable {
+    afterHookedMethod(param);
+  }
+
+
+  public static final class MethodHookParam {
+    public Member method;
+    public Object thisObject;
+    public Object[] args;
+
+    private Object result = null;
+    private Throwable throwable = null;
+    boolean returnEarly = false;
+
+    private Map<String, Object> extra;
+
+    public Object getResult() {
+      return result;
+    }
+
+    public void setResult(Object result) {
+      this.result = result;
+      this.throwable = null;
+      this.returnEarly = true;
+    }
+
+    public Throwable getThrowable() {
+      return throwable;
+    }
+
+    public boolean hasThrowable() {
+      return throwable != null;
+    }
+
+    public void setThrowable(Throwable throwable) {
+      this.throwable = throwable;
+      this.result = null;
+      this.returnEarly = true;
+    }
+
+    public Object getResultOrThrowable() throws Throwable {
+      if(throwable != null) {
+        throw throwable;
+      }
+
+      return result;
+    }
+
+    public Object getObjectExtra(String key) {
+      return extra != null ? extra.get(key) : null;
+    }
+
+    public void setObjectExtra(String key, Object object) {
+      if(extra == null) {
+        extra = new HashMap<>();
+      }
+
+      extra.put(key, object);
+    }
+  }
+
+
+  public class Unhook {
+    private final Member hookMethod;
+
+    Unhook(Member hookMethod) {
+      this.hookMethod = hookMethod;
+    }
+
+    public Member getHookedMethod() {
+      return hookMethod;
+    }
+
+    public XC_MethodHook getCallback() {
+      return XC_MethodHook.this;
+    }
+
+    public void unhook() {
+      XposedBridge.unhookMethod(hookMethod, XC_MethodHook.this);
+    }
+  }
+
+}
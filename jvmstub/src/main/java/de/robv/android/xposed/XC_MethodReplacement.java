@@ -0,0 +1,56 @@
+package de.robv.android.xposed;
+
+/**
+ * Plain JVM stand-in for the Xposed API class of the same name.
+ */
+public abstract class XC_MethodReplacement extends XC_MethodHook {
+
+  public static final int PRIORITY_HIGHEST = 10000;
+
+  public static final XC_MethodReplacement DO_NOTHING = new XC_MethodReplacement(PRIORITY_HIGHEST * 2) {
+    @Override
+    protected Object replaceHookedMethod(MethodHookParam param) {
+      return null;
+    }
+  };
+
+
+  public XC_MethodReplacement() {
+    super();
+  }
+
+
+  public XC_MethodReplacement(int priority) {
+    super(priority);
+  }
+
+
+  @Override
+  protected final void beforeHookedMethod(MethodHookParam param) throws Throwable {
+    try {
+      param.setResult(replaceHookedMethod(param));
+    }
+    catch(Throwable throwable) {
+      param.setThrowable(throwable);
+    }
+  }
+
+
+  @Override
+  protected final void afterHookedMethod(MethodHookParam param) {
+  }
+
+
+  protected abstract Object replaceHookedMethod(MethodHookParam param) throws Throwable;
+
+
+  public static XC_MethodReplacement returnConstant(final Object result) {
+    return new XC_MethodReplacement() {
+      @Override
+      protected Object replaceHookedMethod(MethodHookParam param) {
+        return result;
+      }
+    };
+  }
+
+}
@@ -0,0 +1,239 @@
+package de.robv.android.xposed;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plain JVM stand-in for the Xposed API class of the same name. Hooks are only registered, code running on the JVM
+ * has to route calls through {@link #invokeHooked} to have them intercepted. Logging is counted and only printed
+ * when the {@code xposed.stub.log} system property is set.
+ */
+public final class XposedBridge {
+
+  public static final ClassLoader BOOTCLASSLOADER = ClassLoader.getSystemClassLoader();
+
+  private static final boolean PRINT_LOG = Boolean.getBoolean("xposed.stub.log");
+
+  private static final Map<Member, CopyOnWriteArrayList<XC_MethodHook>> hookedMethods = new ConcurrentHashMap<>();
+
+  private static final AtomicLong logCount = new AtomicLong();
+  private static final AtomicLong hookCount = new AtomicLong();
+  private static final AtomicLong unhookCount = new AtomicLong();
+
+
+  private XposedBridge() {
+  }
+
+
+  public static void log(String text) {
+    logCount.incrementAndGet();
+
+    if(PRINT_LOG) {
+      System.out.println(text);
+    }
+  }
+
+
+  public static void log(Throwable throwable) {
+    logCount.incrementAndGet();
+
+    if(PRINT_LOG) {
+      throwable.printStackTrace(System.out);
+    }
+  }
+
+
+  public static XC_MethodHook.Unhook hookMethod(Member hookMethod, XC_MethodHook callback) {
+    if(!(hookMethod instanceof Method) && !(hookMethod instanceof Constructor)) {
+      throw new IllegalArgumentException("Only methods and constructors can be hooked: " + hookMethod);
+    }
+
+    CopyOnWriteArrayList<XC_MethodHook> callbacks = hookedMethods.get(hookMethod);
+
+    if(callbacks == null) {
+      callbacks = new CopyOnWriteArrayList<>();
+      CopyOnWriteArrayList<XC_MethodHook> existingCallbacks = ((ConcurrentHashMap<Member, CopyOnWriteArrayList<XC_MethodHook>>)hookedMethods).putIfAbsent(hookMethod, callbacks);
+
+      if(existingCallbacks != null) {
+        callbacks = existingCallbacks;
+      }
+    }
+
+    callbacks.addIfAbsent(callback);
+    hookCount.incrementAndGet();
+
+    return callback.new Unhook(hookMethod);
+  }
+
+
+  public static void unhookMethod(Member hookMethod, XC_MethodHook callback) {
+    CopyOnWriteArrayList<XC_MethodHook> callbacks = hookedMethods.get(hookMethod);
+
+    if(callbacks != null && callbacks.remove(callback)) {
+      unhookCount.incrementAndGet();
+    }
+  }
+
+
+  public static Set<XC_MethodHook.Unhook> hookAllMethods(Class<?> hookClass, String methodName, XC_MethodHook callback) {
+    Set<XC_MethodHook.Unhook> unhooks = new HashSet<>();
+
+    for(Method method : hookClass.getDeclaredMethods()) {
+      if(method.getName().equals(methodName)) {
+        unhooks.add(hookMethod(method, callback));
+      }
+    }
+
+    return unhooks;
+  }
+
+
+  public static Set<XC_MethodHook.Unhook> hookAllConstructors(Class<?> hookClass, XC_MethodHook callback) {
+    Set<XC_MethodHook.Unhook> unhooks = new HashSet<>();
+
+    for(Constructor<?> constructor : hookClass.getDeclaredConstructors()) {
+      unhooks.add(hookMethod(constructor, callback));
+    }
+
+    return unhooks;
+  }
+
+
+  /**
+   * Stand-in only: runs the callbacks registered for the method around the given original implementation, the way
+   * the native bridge does on a device.
+   */
+  public static Object invokeHooked(Member method, Object thisObject, Object[] args, OriginalMethod originalMethod) throws Throwable {
+    CopyOnWriteArrayList<XC_MethodHook> callbacks = hookedMethods.get(method);
+
+    if(callbacks == null || callbacks.isEmpty()) {
+      return originalMethod.invoke(thisObject, args);
+    }
+
+    Object[] callbacksSnapshot = callbacks.toArray();
+
+    XC_MethodHook.MethodHookParam param = new XC_MethodHook.MethodHookParam();
+    param.method = method;
+    param.thisObject = thisObject;
+    param.args = args;
+
+    int beforeIndex = 0;
+
+    do {
+      try {
+        ((XC_MethodHook)callbacksSnapshot[beforeIndex]).callBeforeHookedMethod(param);
+      }
+      catch(Throwable throwable) {
+        log(throwable);
+
+        param.setResult(null);
+        param.returnEarly = false;
+        continue;
+      }
+
+      if(param.returnEarly) {
+        beforeIndex++;
+        break;
+      }
+    }
+    while(++beforeIndex < callbacksSnapshot.length);
+
+    if(!param.returnEarly) {
+      try {
+        param.setResult(originalMethod.invoke(thisObject, param.args));
+      }
+      catch(Throwable throwable) {
+        param.setThrowable(throwable);
+      }
+
+      param.returnEarly = false;
+    }
+
+    int afterIndex = beforeIndex - 1;
+
+    do {
+      Object lastResult = param.getResult();
+      Throwable lastThrowable = param.getThrowable();
+
+      try {
+        ((XC_MethodHook)callbacksSnapshot[afterIndex]).callAfterHookedMethod(param);
+      }
+      catch(Throwable throwable) {
+        log(throwable);
+
+        if(lastThrowable == null) {
+          param.setResult(lastResult);
+        }
+        else {
+          param.setThrowable(lastThrowable);
+        }
+      }
+    }
+    while(--afterIndex >= 0);
+
+    return param.getResultOrThrowable();
+  }
+
+
+  /**
+   * Stand-in only: {@link #invokeHooked} for methods without checked exceptions, rethrows what the callbacks or the
+   * original implementation throw.
+   */
+  public static Object invokeHookedUnchecked(Member method, Object thisObject, Object[] args, OriginalMethod originalMethod) {
+    try {
+      return invokeHooked(method, thisObject, args, originalMethod);
+    }
+    catch(RuntimeException | Error exception) {
+      throw exception;
+    }
+    catch(Throwable throwable) {
+      throw new UndeclaredThrowableException(throwable);
+    }
+  }
+
+
+  /**
+   * Stand-in only: resolves the member an intercepted method passes to {@link #invokeHooked}, meant for static
+   * initializers.
+   */
+  public static Method getDeclaredMethod(Class<?> clazz, String methodName, Class<?>... parameterTypes) {
+    try {
+      return clazz.getDeclaredMethod(methodName, parameterTypes);
+    }
+    catch(NoSuchMethodException exception) {
+      throw new NoSuchMethodError(exception.getMessage());
+    }
+  }
+
+
+  /**
+   * Stand-in only: original implementation of an intercepted method.
+   */
+  public interface OriginalMethod {
+    Object invoke(Object thisObject, Object[] args) throws Throwable;
+  }
+
+
+  public static long getLogCount() {
+    return logCount.get();
+  }
+
+
+  public static long getHookCount() {
+    return hookCount.get();
+  }
+
+
+  public static long getUnhookCount() {
+    return unhookCount.get();
+  }
+
+}
@@ -0,0 +1,158 @@
+package de.robv.android.xposed;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Plain JVM stand-in for the Xposed API class of the same name, covering the helpers the module uses.
+ */
+public final class XposedHelpers {
+
+  private static final Map<String, Class<?>> PRIMITIVE_CLASSES = new HashMap<>();
+
+  static {
+    for(Class<?> primitiveClass : new Class<?>[] {
+        Boolean.TYPE, Byte.TYPE, Character.TYPE, Short.TYPE, Integer.TYPE, Long.TYPE, Float.TYPE, Double.TYPE, Void.TYPE }) {
+      PRIMITIVE_CLASSES.put(primitiveClass.getName(), primitiveClass);
+    }
+  }
+
+
+  public static final class ClassNotFoundError extends Error {
+    public ClassNotFoundError(Throwable cause) {
+      super(cause);
+    }
+
+    public ClassNotFoundError(String detailMessage, Throwable cause) {
+      super(detailMessage, cause);
+    }
+  }
+
+
+  private XposedHelpers() {
+  }
+
+
+  public static Class<?> findClass(String className, ClassLoader classLoader) {
+    Class<?> primitiveClass = PRIMITIVE_CLASSES.get(className);
+
+    if(primitiveClass != null) {
+      return primitiveClass;
+    }
+
+    try {
+      return Class.forName(className, false, classLoader != null ? classLoader : XposedBridge.BOOTCLASSLOADER);
+    }
+    catch(ClassNotFoundException exception) {
+      throw new ClassNotFoundError(exception);
+    }
+  }
+
+
+  public static Field findField(Class<?> clazz, String fieldName) {
+    for(Class<?> currentClass = clazz; currentClass != null; currentClass = currentClass.getSuperclass()) {
+      try {
+        Field field = currentClass.getDeclaredField(fieldName);
+        field.setAccessible(true);
+        return field;
+      }
+      catch(NoSuchFieldException ignored) {
+      }
+    }
+
+    throw new NoSuchFieldError(clazz.getName() + "#" + fieldName);
+  }
+
+
+  public static Method findMethodExact(Class<?> clazz, String methodName, Class<?>... parameterTypes) {
+    try {
+      Method method = clazz.getDeclaredMethod(methodName, parameterTypes);
+      method.setAccessible(true);
+      return method;
+    }
+    catch(NoSuchMethodException exception) {
+      throw new NoSuchMethodError(clazz.getName() + '#' + methodName + Arrays.toString(parameterTypes) + "#exact");
+    }
+  }
+
+
+  public static Method findMethodBestMatch(Class<?> clazz, String methodName, Class<?>... parameterTypes) {
+    try {
+      return findMethodExact(clazz, methodName, parameterTypes);
+    }
+    catch(NoSuchMethodError ignored) {
+    }
+
+    for(Class<?> currentClass = clazz; currentClass != null; currentClass = currentClass.getSuperclass()) {
+      for(Method method : currentClass.getDeclaredMethods()) {
+        if(method.getName().equals(methodName) && isAssignable(parameterTypes, method.getParameterTypes())) {
+          method.setAccessible(true);
+          return method;
+        }
+      }
+    }
+
+    throw new NoSuchMethodError(clazz.getName() + '#' + methodName + Arrays.toString(parameterTypes) + "#bestmatch");
+  }
+
+
+  public static XC_MethodHook.Unhook findAndHookMethod(Class<?> clazz, String methodName, Object... parameterTypesAndCallback) {
+    if(parameterTypesAndCallback.length == 0 || !(parameterTypesAndCallback[parameterTypesAndCallback.length - 1] instanceof XC_MethodHook)) {
+      throw new IllegalArgumentException("no callback defined");
+    }
+
+    XC_MethodHook callback = (XC_MethodHook)parameterTypesAndCallback[parameterTypesAndCallback.length - 1];
+    Class<?>[] parameterTypes = new Class<?>[parameterTypesAndCallback.length - 1];
+
+    for(int i = 0; i < parameterTypes.length; i++) {
+      Object type = parameterTypesAndCallback[i];
+      parameterTypes[i] = type instanceof Class ? (Class<?>)type : findClass((String)type, clazz.getClassLoader());
+    }
+
+    return XposedBridge.hookMethod(findMethodExact(clazz, methodName, parameterTypes), callback);
+  }
+
+
+  public static XC_MethodHook.Unhook findAndHookMethod(String className, ClassLoader classLoader, String methodName, Object... parameterTypesAndCallback) {
+    return findAndHookMethod(findClass(className, classLoader), methodName, parameterTypesAndCallback);
+  }
+
+
+  public static Object getObjectField(Object object, String fieldName) {
+    try {
+      return findField(object.getClass(), fieldName).get(object);
+    }
+    catch(IllegalAccessException exception) {
+      throw new IllegalAccessError(exception.getMessage());
+    }
+  }
+
+
+  public static int getIntField(Object object, String fieldName) {
+    try {
+      return findField(object.getClass(), fieldName).getInt(object);
+    }
+    catch(IllegalAccessException exception) {
+      throw new IllegalAccessError(exception.getMessage());
+    }
+  }
+
+
+  private static boolean isAssignable(Class<?>[] from, Class<?>[] to) {
+    if(from.length != to.length) {
+      return false;
+    }
+
+    for(int i = 0; i < from.length; i++) {
+      if(!to[i].isAssignableFrom(from[i])) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+}
@@ -0,0 +1,18 @@
+package de.robv.android.xposed.callbacks;
+
+import android.content.pm.ApplicationInfo;
+
+/**
+ * Plain JVM stand-in for the Xposed API class of the same name.
+ */
+public abstract class XC_LoadPackage {
+
+  public static final class LoadPackageParam {
+    public String packageName;
+    public String processName;
+    public ClassLoader classLoader;
+    public ApplicationInfo appInfo;
+    public boolean isFirstApplication;
+  }
+
+}
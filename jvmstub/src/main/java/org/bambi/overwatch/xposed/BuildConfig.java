@@ -0,0 +1,12 @@
+package org.bambi.overwatch.xposed;
+
+/**
+ * Plain JVM stand-in for the class the Android build generates, with every log level compiled in.
+ */
+public final class BuildConfig {
+
+  public static final String APPLICATION_ID = "org.bambi.overwatch.xposed";
+  public static final boolean DEBUG = true;
+  public static final int LOG_LEVEL = 2;
+
+}
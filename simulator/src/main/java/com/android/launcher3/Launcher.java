@@ -0,0 +1,72 @@
+package com.android.launcher3;
+
+import android.view.View;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+import com.teslacoilsw.launcher.AppSearchView;
+
+import de.robv.android.xposed.XposedBridge;
+
+/**
+ * Synthetic stand-in for Nova Launcher's activity. Constructing it releases the module's hook installer, {@code eN}
+ * opens or closes the app search the way the obfuscated original does, {@code onResume} and {@code onDestroy} are
+ * its lifecycle.
+ */
+public class Launcher {
+
+  private static final Constructor<?> CONSTRUCTOR = getConstructor();
+  private static final Method SHOW_APP_SEARCH_VIEW =
+      XposedBridge.getDeclaredMethod(Launcher.class, "eN", View.class, Boolean.TYPE, Integer.TYPE, Integer.TYPE);
+
+  private static final Method ON_RESUME = XposedBridge.getDeclaredMethod(Launcher.class, "onResume");
+  private static final Method ON_DESTROY = XposedBridge.getDeclaredMethod(Launcher.class, "onDestroy");
+
+  private static final XposedBridge.OriginalMethod NOTHING_ORIGINAL = (thisObject, args) -> null;
+
+  private static final XposedBridge.OriginalMethod SHOW_APP_SEARCH_VIEW_ORIGINAL = (thisObject, args) -> {
+    AppSearchView appSearchView = (AppSearchView)args[0];
+
+    if((Boolean)args[1]) {
+      appSearchView.eN((Integer)args[2], (Integer)args[3], 0);
+    }
+    else {
+      appSearchView.eN((Integer)args[2]);
+    }
+
+    appSearchView.fb();
+    return null;
+  };
+
+
+  public Launcher() {
+    XposedBridge.invokeHookedUnchecked(CONSTRUCTOR, this, new Object[0], NOTHING_ORIGINAL);
+  }
+
+
+  public void onResume() {
+    XposedBridge.invokeHookedUnchecked(ON_RESUME, this, new Object[0], NOTHING_ORIGINAL);
+  }
+
+
+  public void onDestroy() {
+    XposedBridge.invokeHookedUnchecked(ON_DESTROY, this, new Object[0], NOTHING_ORIGINAL);
+  }
+
+
+  public void eN(View appSearchView, boolean show, int x, int y) {
+    XposedBridge.invokeHookedUnchecked(SHOW_APP_SEARCH_VIEW, this, new Object[] { appSearchView, show, x, y }, SHOW_APP_SEARCH_VIEW_ORIGINAL);
+  }
+
+
+  private static Constructor<?> getConstructor() {
+    try {
+      return Launcher.class.getDeclaredConstructor();
+    }
+    catch(NoSuchMethodException exception) {
+      throw new NoSuchMethodError(exception.getMessage());
+    }
+  }
+
+}
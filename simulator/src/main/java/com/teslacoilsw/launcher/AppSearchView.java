@@ -0,0 +1,213 @@
+package com.teslacoilsw.launcher;
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.AnimatorSet;
+import android.animation.ArgbEvaluator;
+import android.animation.ObjectAnimator;
+import android.animation.PropertyValuesHolder;
+import android.animation.ValueAnimator;
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import com.android.launcher3.Launcher;
+
+import de.robv.android.xposed.XposedBridge;
+
+/**
+ * Synthetic stand-in for Nova Launcher's app search view with the fields and obfuscated methods the module hooks.
+ * Show and hide build and start their transition like the original: a background color animator played together
+ * with two value animators, built in turn with each of the animator factories and AnimatorSet builders. They also keep the state the original keeps outside of the transition, whether the view
+ * is open, and a hidden view only goes away once its transition ended.
+ */
+public class AppSearchView extends LinearLayout {
+
+  public static final int BACKGROUND_COLOR = 0xCC080808;
+
+  private static final Method SET_LAUNCHER = XposedBridge.getDeclaredMethod(AppSearchView.class, "setLauncher", Launcher.class);
+  private static final Method TOGGLE_KEYBOARD = XposedBridge.getDeclaredMethod(AppSearchView.class, "fb");
+  private static final Method SHOW = XposedBridge.getDeclaredMethod(AppSearchView.class, "eN", Integer.TYPE, Integer.TYPE, Integer.TYPE);
+  private static final Method HIDE = XposedBridge.getDeclaredMethod(AppSearchView.class, "eN", Integer.TYPE);
+
+  private static final XposedBridge.OriginalMethod SET_LAUNCHER_ORIGINAL = (thisObject, args) -> {
+    ((AppSearchView)thisObject).launcher = (Launcher)args[0];
+    return null;
+  };
+
+  private static final XposedBridge.OriginalMethod TOGGLE_KEYBOARD_ORIGINAL = (thisObject, args) -> {
+    ((AppSearchView)thisObject).keyboardToggles++;
+    return null;
+  };
+
+  private static final XposedBridge.OriginalMethod SHOW_ORIGINAL = (thisObject, args) -> {
+    ((AppSearchView)thisObject).startTransition(true);
+    return null;
+  };
+
+  private static final XposedBridge.OriginalMethod HIDE_ORIGINAL = (thisObject, args) -> {
+    ((AppSearchView)thisObject).startTransition(false);
+    return null;
+  };
+
+  private final LinearLayout mLinearLayout;
+  private final FrameLayout mSearchbarBackground;
+  private final FrameLayout mContentScrollviewParent;
+
+  // removes the hidden view from the layout, reused by all hides
+  private final AnimatorListenerAdapter hideEndListener = new AnimatorListenerAdapter() {
+    @Override
+    public void onAnimationEnd(Animator animation) {
+      setVisibility(View.GONE);
+    }
+  };
+
+  private Launcher launcher;
+  private boolean open;
+  private int keyboardToggles;
+  private int transitions;
+  private AnimatorSet lastTransition;
+  private ObjectAnimator lastBackgroundColorAnimator;
+
+
+  public AppSearchView(Context context) {
+    super(context);
+
+    mLinearLayout = new LinearLayout(context);
+    mLinearLayout.setBackgroundColor(0xFF202020);
+    addView(mLinearLayout, new ViewGroup.MarginLayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+
+    mSearchbarBackground = new FrameLayout(context);
+    mLinearLayout.addView(mSearchbarBackground, new ViewGroup.MarginLayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, 144));
+
+    mContentScrollviewParent = new FrameLayout(context);
+    mLinearLayout.addView(mContentScrollviewParent, new ViewGroup.MarginLayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+
+    setVisibility(View.GONE);
+  }
+
+
+  public void setLauncher(Launcher launcher) {
+    XposedBridge.invokeHookedUnchecked(SET_LAUNCHER, this, new Object[] { launcher }, SET_LAUNCHER_ORIGINAL);
+  }
+
+
+  public void fb() {
+    XposedBridge.invokeHookedUnchecked(TOGGLE_KEYBOARD, this, new Object[0], TOGGLE_KEYBOARD_ORIGINAL);
+  }
+
+
+  public void eN(int x, int y, int radius) {
+    XposedBridge.invokeHookedUnchecked(SHOW, this, new Object[] { x, y, radius }, SHOW_ORIGINAL);
+  }
+
+
+  public void eN(int x) {
+    XposedBridge.invokeHookedUnchecked(HIDE, this, new Object[] { x }, HIDE_ORIGINAL);
+  }
+
+
+  private void startTransition(boolean show) {
+    int startColor = show ? 0 : BACKGROUND_COLOR;
+    int endColor = show ? BACKGROUND_COLOR : 0;
+    ObjectAnimator backgroundColorAnimator;
+    AnimatorSet transition = new AnimatorSet();
+
+    // builds the transition in each of the ways Nova builds could, the module has to find it every time
+    switch(transitions++ & 3) {
+      case 0:
+        backgroundColorAnimator = ObjectAnimator.ofArgb(this, "backgroundColor", startColor, endColor);
+        transition.playTogether(ValueAnimator.ofInt(0, 255), backgroundColorAnimator, ValueAnimator.ofInt(0, 100));
+        break;
+      case 1:
+        backgroundColorAnimator = ObjectAnimator.ofObject(this, "backgroundColor", new ArgbEvaluator(), startColor, endColor);
+        transition.play(ValueAnimator.ofInt(0, 255)).with(backgroundColorAnimator).with(ValueAnimator.ofInt(0, 100));
+        break;
+      case 2:
+        backgroundColorAnimator = new ObjectAnimator();
+        backgroundColorAnimator.setTarget(this);
+        backgroundColorAnimator.setPropertyName("backgroundColor");
+        backgroundColorAnimator.setIntValues(startColor, endColor);
+
+        AnimatorSet nestedAnimatorSet = new AnimatorSet();
+        nestedAnimatorSet.playSequentially(ValueAnimator.ofInt(0, 255), backgroundColorAnimator);
+        transition.playTogether(Arrays.<Animator>asList(nestedAnimatorSet, ValueAnimator.ofInt(0, 100)));
+        break;
+      default:
+        backgroundColorAnimator = ObjectAnimator.ofPropertyValuesHolder(this, PropertyValuesHolder.ofInt("backgroundColor", startColor, endColor));
+        transition.playTogether(ValueAnimator.ofInt(0, 255), backgroundColorAnimator, ValueAnimator.ofInt(0, 100));
+        break;
+    }
+
+    transition.setDuration(250L);
+
+    if(show) {
+      setVisibility(View.VISIBLE);
+    }
+    else {
+      transition.addListener(hideEndListener);
+    }
+
+    open = show;
+    transition.start();
+
+    setBackgroundColor(show ? backgroundColorAnimator.getIntValues()[1] : 0);
+    lastTransition = transition;
+    lastBackgroundColorAnimator = backgroundColorAnimator;
+  }
+
+
+  public LinearLayout getLinearLayout() {
+    return mLinearLayout;
+  }
+
+
+  public FrameLayout getSearchbarBackground() {
+    return mSearchbarBackground;
+  }
+
+
+  public FrameLayout getContentScrollviewParent() {
+    return mContentScrollviewParent;
+  }
+
+
+  public Launcher getLauncher() {
+    return launcher;
+  }
+
+
+  /**
+   * Whether the last show was not hidden since, set by the original show and hide only.
+   */
+  public boolean isOpen() {
+    return open;
+  }
+
+
+  public int getKeyboardToggles() {
+    return keyboardToggles;
+  }
+
+
+  /**
+   * The AnimatorSet of the last animated show or hide.
+   */
+  public AnimatorSet getLastTransition() {
+    return lastTransition;
+  }
+
+
+  /**
+   * The background color animator played by the last transition.
+   */
+  public ObjectAnimator getLastBackgroundColorAnimator() {
+    return lastBackgroundColorAnimator;
+  }
+
+}
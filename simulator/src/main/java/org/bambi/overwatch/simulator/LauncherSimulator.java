@@ -0,0 +1,460 @@
+package org.bambi.overwatch.simulator;
+
+import android.animation.AnimatorSet;
+import android.animation.ObjectAnimator;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.os.Looper;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import android.widget.FrameLayout;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.android.launcher3.Launcher;
+import com.teslacoilsw.launcher.AppSearchView;
+
+import de.robv.android.xposed.XposedBridge;
+import de.robv.android.xposed.callbacks.XC_LoadPackage;
+
+import org.bambi.overwatch.xposed.BuildConfig;
+import org.bambi.overwatch.xposed.OverwatchMain;
+import org.bambi.overwatch.xposed.diagnostics.DiagnosticsReceiver;
+import org.bambi.overwatch.xposed.settings.OverwatchSettings;
+import org.bambi.overwatch.xposed.settings.SimulatorSettings;
+import org.bambi.overwatch.xposed.util.HookStatistics;
+import org.bambi.overwatch.xposed.util.HookTracing;
+import org.bambi.overwatch.xposed.util.OverwatchLog;
+import org.bambi.overwatch.xposed.util.RetainedObjects;
+
+/**
+ * Loads the module into a simulated Nova Launcher process and drives app search show/hide cycles from several threads,
+ * each with its own launcher and AppSearchView. The view has to be prewarmed once the thread is idle after
+ * setLauncher; odd drivers open it once before, so the open latency report has cold and prewarmed first opens. Every
+ * cycle is verified against the default settings: the background animator plays the configured color, the transition
+ * runs with duration 0, the keyboard is not toggled and the view's own open state follows the show or hide. The view
+ * tree is drawn after most shows, which ends their timed open; no pre-draw listener may be left after the draw or the
+ * hide. Each driver finally recreates its launcher and destroys it before the thread is idle, its prewarm may not stay
+ * queued. Once the drivers are done, none of their launchers and views may be retained.
+ *
+ * <p>Reports throughput, CPU time and allocation per cycle, hook counts and the module diagnostics. Exits with 1 on
+ * a failed verification or when the per cycle cost exceeds the given thresholds, derived from
+ * {@code baseline.properties}: the {@code simulate} task of the build check passes the allocation threshold only,
+ * {@code simulateTiming} the host dependent CPU time threshold too.
+ *
+ * <pre>
+ * LauncherSimulator [--threads 4] [--cycles 25000] [--max-nanos-per-cycle 7875] [--max-bytes-per-cycle 3000]
+ *     [--statistics] [--diagnostics] [--instant-transition]
+ * </pre>
+ *
+ * With {@code --statistics} the hooks are measured and traced like after switching them on through the diagnostics
+ * receiver, with {@code --diagnostics} the transitions are measured like after switching that setting on. The cost
+ * per cycle then includes the instrumentation. With {@code --instant-transition} that setting is on too, every
+ * transition has to be ended when its show or hide returns.
+ */
+public class LauncherSimulator {
+
+  private static final String NOVA_LAUNCHER_PACKAGE = "com.teslacoilsw.launcher";
+
+  private static final int SCREEN_WIDTH = 1080;
+  private static final int SCREEN_HEIGHT = 2160;
+
+  private static class SimulatorContext extends Context {
+    private final File dataDir;
+
+    SimulatorContext(File dataDir) {
+      this.dataDir = dataDir;
+    }
+
+    @Override
+    public File getDataDir() {
+      return dataDir;
+    }
+  }
+
+  private static class Driver extends Thread {
+    private final Context context;
+    private final boolean coldOpen;
+    private final int cycles;
+    private final int warmupCycles;
+    private final CountDownLatch start;
+    private final boolean instantTransition;
+
+    final List<String> failures = new ArrayList<>();
+    long cpuNanos;
+    long allocatedBytes;
+
+    Driver(int index, Context context, int cycles, CountDownLatch start, boolean instantTransition) {
+      super("Simulator-" + index);
+      this.context = context;
+      this.coldOpen = (index & 1) != 0;
+      this.cycles = cycles;
+      this.warmupCycles = cycles / 5;
+      this.start = start;
+      this.instantTransition = instantTransition;
+    }
+
+    @Override
+    public void run() {
+      com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+      // each driver is the main thread of its launcher, the prewarm runs once its queue is idle
+      Looper.prepare();
+
+      Launcher launcher = new Launcher();
+      FrameLayout root = new FrameLayout(context);
+      root.layout(0, 0, SCREEN_WIDTH, SCREEN_HEIGHT);
+
+      AppSearchView appSearchView = new AppSearchView(context);
+      root.addView(appSearchView, new ViewGroup.MarginLayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+      appSearchView.setLauncher(launcher);
+      launcher.onResume();
+      int firstWarmupCycle = 0;
+
+      // odd drivers open the app search before their thread was idle, the first open of their view is cold
+      if(coldOpen) {
+        cycle(launcher, appSearchView, firstWarmupCycle++);
+      }
+
+      Looper.myQueue().idle();
+      verifyLayout(appSearchView);
+      verifyPrewarm(appSearchView);
+
+      for(int i = firstWarmupCycle; i < warmupCycles; i++) {
+        cycle(launcher, appSearchView, i);
+      }
+
+      try {
+        start.await();
+      }
+      catch(InterruptedException exception) {
+        return;
+      }
+
+      long startCpuNanos = threadMXBean.getCurrentThreadCpuTime();
+      long startAllocatedBytes = threadMXBean.getThreadAllocatedBytes(getId());
+
+      for(int i = 0; i < cycles; i++) {
+        cycle(launcher, appSearchView, i);
+      }
+
+      cpuNanos = threadMXBean.getCurrentThreadCpuTime() - startCpuNanos;
+      allocatedBytes = threadMXBean.getThreadAllocatedBytes(getId()) - startAllocatedBytes;
+
+      launcher.onDestroy();
+      verifyDestroyBeforeIdle(context);
+    }
+
+    private void cycle(Launcher launcher, AppSearchView appSearchView, int cycle) {
+      launcher.eN(appSearchView, true, cycle & 0xFF, 64);
+      verifyTransition(appSearchView, true, cycle);
+
+      // every 16th show is hidden before it is drawn
+      if((cycle & 0xF) != 0xF) {
+        draw(appSearchView, cycle);
+      }
+
+      launcher.eN(appSearchView, false, cycle & 0xFF, 64);
+      verifyTransition(appSearchView, false, cycle);
+      verifyPreDrawListeners(appSearchView, cycle);
+    }
+
+    /**
+     * Runs the pre-draw of the view tree, which ends the timed open of the view.
+     */
+    private void draw(AppSearchView appSearchView, int cycle) {
+      ViewTreeObserver viewTreeObserver = appSearchView.getViewTreeObserver();
+
+      if(!viewTreeObserver.dispatchOnPreDraw()) {
+        fail(String.format("Cycle %d: draw cancelled", cycle));
+      }
+      else {
+        verifyPreDrawListeners(appSearchView, cycle);
+      }
+    }
+
+    private void verifyPreDrawListeners(AppSearchView appSearchView, int cycle) {
+      ViewTreeObserver viewTreeObserver = appSearchView.getViewTreeObserver();
+
+      if(viewTreeObserver.getOnPreDrawListenerCount() != 0) {
+        fail(String.format("Cycle %d: %d pre-draw listeners left", cycle, viewTreeObserver.getOnPreDrawListenerCount()));
+      }
+    }
+
+    private void verifyLayout(AppSearchView appSearchView) {
+      if(appSearchView.getLinearLayout().getBackground() != null) {
+        fail("Background of mLinearLayout not removed");
+      }
+
+      int searchbarTopMargin = ((ViewGroup.MarginLayoutParams)appSearchView.getSearchbarBackground().getLayoutParams()).topMargin;
+      int contentTopMargin = ((ViewGroup.MarginLayoutParams)appSearchView.getContentScrollviewParent().getLayoutParams()).topMargin;
+
+      if(searchbarTopMargin != OverwatchSettings.DEFAULTS.getSearchbarTopMargin() || contentTopMargin != OverwatchSettings.DEFAULTS.getContentTopMargin()) {
+        fail(String.format("Top margins %d and %d", searchbarTopMargin, contentTopMargin));
+      }
+    }
+
+    private void verifyPrewarm(AppSearchView appSearchView) {
+      if(appSearchView.getMeasureCount() != 1 || appSearchView.getMeasuredWidth() != SCREEN_WIDTH || appSearchView.getMeasuredHeight() != SCREEN_HEIGHT) {
+        fail(String.format("Prewarm measured %d times at %dx%d",
+            appSearchView.getMeasureCount(), appSearchView.getMeasuredWidth(), appSearchView.getMeasuredHeight()));
+      }
+    }
+
+    /**
+     * Recreates the launcher and destroys it before the thread is idle, which must not leave its prewarm queued.
+     */
+    private void verifyDestroyBeforeIdle(Context context) {
+      Launcher launcher = new Launcher();
+      FrameLayout root = new FrameLayout(context);
+      root.layout(0, 0, SCREEN_WIDTH, SCREEN_HEIGHT);
+
+      AppSearchView appSearchView = new AppSearchView(context);
+      root.addView(appSearchView, new ViewGroup.MarginLayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+      appSearchView.setLauncher(launcher);
+      launcher.onDestroy();
+
+      if(Looper.myQueue().getIdleHandlerCount() != 0) {
+        fail(String.format("%d idle handlers left after onDestroy", Looper.myQueue().getIdleHandlerCount()));
+      }
+    }
+
+    private void verifyTransition(AppSearchView appSearchView, boolean show, int cycle) {
+      int color = OverwatchSettings.DEFAULTS.getAppSearchViewBackgroundColor();
+      int[] expectedValues = show ? new int[] { 0, color } : new int[] { color, 0 };
+
+      AnimatorSet transition = appSearchView.getLastTransition();
+      ObjectAnimator backgroundColorAnimator = appSearchView.getLastBackgroundColorAnimator();
+
+      if(!Arrays.equals(backgroundColorAnimator.getIntValues(), expectedValues)) {
+        fail(String.format("Cycle %d %s: background animator values %s", cycle, show ? "show" : "hide",
+            Arrays.toString(backgroundColorAnimator.getIntValues())));
+      }
+      else if(transition.getDuration() != 0L) {
+        fail(String.format("Cycle %d %s: duration %d", cycle, show ? "show" : "hide", transition.getDuration()));
+      }
+      else if(appSearchView.getKeyboardToggles() != 0) {
+        fail(String.format("Cycle %d %s: keyboard toggled", cycle, show ? "show" : "hide"));
+      }
+      else if(appSearchView.isOpen() != show) {
+        fail(String.format("Cycle %d %s: Nova's open state not updated", cycle, show ? "show" : "hide"));
+      }
+      else if(instantTransition && transition.isRunning()) {
+        fail(String.format("Cycle %d %s: transition still running", cycle, show ? "show" : "hide"));
+      }
+      else if(instantTransition && appSearchView.getVisibility() != (show ? View.VISIBLE : View.GONE)) {
+        fail(String.format("Cycle %d %s: visibility %d", cycle, show ? "show" : "hide", appSearchView.getVisibility()));
+      }
+    }
+
+    private void fail(String failure) {
+      // the first few are enough to see what is wrong
+      if(failures.size() < 10) {
+        failures.add(failure);
+      }
+      else {
+        droppedFailures.incrementAndGet();
+      }
+    }
+  }
+
+
+  private static final AtomicLong droppedFailures = new AtomicLong();
+
+
+  public static void main(String[] args) throws Throwable {
+    int threads = 4;
+    int cycles = 25000;
+    long maxNanosPerCycle = Long.MAX_VALUE;
+    long maxBytesPerCycle = Long.MAX_VALUE;
+    boolean diagnostics = false;
+    boolean instantTransition = false;
+
+    for(int i = 0; i < args.length; i++) {
+      switch(args[i]) {
+        case "--threads":
+          threads = Integer.parseInt(args[++i]);
+          break;
+        case "--cycles":
+          cycles = Integer.parseInt(args[++i]);
+          break;
+        case "--max-nanos-per-cycle":
+          maxNanosPerCycle = Long.parseLong(args[++i]);
+          break;
+        case "--max-bytes-per-cycle":
+          maxBytesPerCycle = Long.parseLong(args[++i]);
+          break;
+        case "--statistics":
+          HookStatistics.setEnabled(true);
+          HookTracing.setRecorderEnabled(true);
+          break;
+        case "--diagnostics":
+          diagnostics = true;
+          break;
+        case "--instant-transition":
+          instantTransition = true;
+          break;
+        default:
+          System.err.println("Unknown argument " + args[i]);
+          System.exit(2);
+      }
+    }
+
+    OverwatchLog.setLevel(OverwatchLog.INFO);
+
+    File processDirectory = Files.createTempDirectory("overwatch-simulator").toFile();
+    XC_LoadPackage.LoadPackageParam lpParam = createLoadPackageParam(processDirectory);
+    Context context = new SimulatorContext(new File(lpParam.appInfo.dataDir));
+
+    if(diagnostics || instantTransition) {
+      Map<String, Object> preferences = new HashMap<>();
+      preferences.put(OverwatchSettings.KEY_JANK_MONITOR_ENABLED, diagnostics);
+      preferences.put(OverwatchSettings.KEY_INSTANT_TRANSITION_ENABLED, instantTransition);
+
+      SimulatorSettings.write(new SimulatorContext(new File(processDirectory, BuildConfig.APPLICATION_ID)), preferences);
+    }
+
+    long loadStartNanos = System.nanoTime();
+    new OverwatchMain().handleLoadPackage(lpParam);
+    long loadNanos = System.nanoTime() - loadStartNanos;
+
+    // constructing the launcher activity releases the hook installer
+    long installStartNanos = System.nanoTime();
+    new Launcher();
+    long installNanos = System.nanoTime() - installStartNanos;
+
+    long hookCount = XposedBridge.getHookCount();
+    long unhookCount = XposedBridge.getUnhookCount();
+
+    CountDownLatch start = new CountDownLatch(1);
+    List<Driver> drivers = new ArrayList<>();
+
+    for(int i = 0; i < threads; i++) {
+      Driver driver = new Driver(i, context, cycles, start, instantTransition);
+      drivers.add(driver);
+      driver.start();
+    }
+
+    long runStartNanos = System.nanoTime();
+    start.countDown();
+
+    for(Driver driver : drivers) {
+      driver.join();
+    }
+
+    long runNanos = System.nanoTime() - runStartNanos;
+
+    long totalCycles = (long)threads * cycles;
+    long cpuNanos = 0L;
+    long allocatedBytes = 0L;
+    List<String> failures = new ArrayList<>();
+
+    for(Driver driver : drivers) {
+      cpuNanos += driver.cpuNanos;
+      allocatedBytes += driver.allocatedBytes;
+      failures.addAll(driver.failures);
+    }
+
+    // the launchers and views of the finished drivers are unreachable, unless the module leaks them
+    drivers.clear();
+    System.gc();
+    System.runFinalization();
+    System.gc();
+
+    for(String line : RetainedObjects.getReport()) {
+      if(line.matches(".*: alive=[1-9].*")) {
+        failures.add("Leaked " + line);
+      }
+    }
+
+    long nanosPerCycle = cpuNanos / totalCycles;
+    long bytesPerCycle = allocatedBytes / totalCycles;
+
+    System.out.println("Launcher simulator:");
+    System.out.println(String.format("  handleLoadPackage %.2f ms, hook install %.2f ms", loadNanos / 1e6, installNanos / 1e6));
+    System.out.println(String.format("  hooks installed %d, uninstalled %d, after run %d/%d",
+        hookCount, unhookCount, XposedBridge.getHookCount(), XposedBridge.getUnhookCount()));
+    System.out.println(String.format("  %d threads x %d show/hide cycles in %.1f ms, %.0f cycles/s",
+        threads, cycles, runNanos / 1e6, totalCycles * 1e9 / runNanos));
+    System.out.println(String.format("  %d ns CPU and %d bytes allocated per cycle", nanosPerCycle, bytesPerCycle));
+    System.out.println(String.format("  %d failed verifications", failures.size() + droppedFailures.get()));
+
+    for(String failure : failures) {
+      System.out.println("    " + failure);
+    }
+
+    for(String line : DiagnosticsReceiver.collectReport()) {
+      System.out.println("  " + line);
+    }
+
+    deleteRecursively(processDirectory);
+
+    boolean failed = !failures.isEmpty();
+
+    if(nanosPerCycle > maxNanosPerCycle) {
+      System.out.println(String.format("Regression: %d ns per cycle exceeds %d", nanosPerCycle, maxNanosPerCycle));
+      failed = true;
+    }
+
+    if(bytesPerCycle > maxBytesPerCycle) {
+      System.out.println(String.format("Regression: %d bytes per cycle exceeds %d", bytesPerCycle, maxBytesPerCycle));
+      failed = true;
+    }
+
+    System.exit(failed ? 1 : 0);
+  }
+
+
+  /**
+   * Lays out the process like on a device: the data directories of Nova and of the module share a parent.
+   */
+  private static XC_LoadPackage.LoadPackageParam createLoadPackageParam(File processDirectory) throws IOException {
+    File dataDir = new File(processDirectory, NOVA_LAUNCHER_PACKAGE);
+    File sourceDir = new File(processDirectory, "base.apk");
+
+    if(!dataDir.mkdirs()) {
+      throw new IOException("Cannot create directory " + dataDir);
+    }
+
+    Files.write(sourceDir.toPath(), new byte[] { 'P', 'K' });
+
+    ApplicationInfo appInfo = new ApplicationInfo();
+    appInfo.packageName = NOVA_LAUNCHER_PACKAGE;
+    appInfo.dataDir = dataDir.getPath();
+    appInfo.sourceDir = sourceDir.getPath();
+
+    XC_LoadPackage.LoadPackageParam lpParam = new XC_LoadPackage.LoadPackageParam();
+    lpParam.packageName = NOVA_LAUNCHER_PACKAGE;
+    lpParam.processName = NOVA_LAUNCHER_PACKAGE;
+    lpParam.classLoader = LauncherSimulator.class.getClassLoader();
+    lpParam.appInfo = appInfo;
+    lpParam.isFirstApplication = true;
+
+    return lpParam;
+  }
+
+
+  private static void deleteRecursively(File file) {
+    File[] children = file.listFiles();
+
+    if(children != null) {
+      for(File child : children) {
+        deleteRecursively(child);
+      }
+    }
+
+    file.delete();
+  }
+
+}
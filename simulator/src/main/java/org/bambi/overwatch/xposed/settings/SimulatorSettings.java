@@ -0,0 +1,58 @@
+package org.bambi.overwatch.xposed.settings;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Writes the module settings like its settings screen does, for the simulated launcher process to read.
+ */
+public final class SimulatorSettings {
+
+  private static final class MapPreferences implements SharedPreferences {
+    private final Map<String, ?> values;
+
+    MapPreferences(Map<String, ?> values) {
+      this.values = values;
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defValue) {
+      Object value = values.get(key);
+      return value instanceof Boolean ? (Boolean)value : defValue;
+    }
+
+    @Override
+    public String getString(String key, String defValue) {
+      Object value = values.get(key);
+      return value instanceof String ? (String)value : defValue;
+    }
+
+    @Override
+    public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+    }
+
+    @Override
+    public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+    }
+  }
+
+
+  private SimulatorSettings() {
+  }
+
+
+  /**
+   * Writes the given preferences to the files directory of the module's context, missing ones get their defaults.
+   */
+  public static void write(Context moduleContext, Map<String, ?> preferences) throws IOException {
+    if(!moduleContext.getFilesDir().isDirectory() && !moduleContext.getFilesDir().mkdirs()) {
+      throw new IOException("Cannot create directory " + moduleContext.getFilesDir());
+    }
+
+    SettingsWriter.write(moduleContext, new MapPreferences(preferences));
+  }
+
+}
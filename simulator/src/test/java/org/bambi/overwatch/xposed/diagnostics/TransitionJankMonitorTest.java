@@ -0,0 +1,169 @@
+package org.bambi.overwatch.xposed.diagnostics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TransitionJankMonitorTest {
+
+  private static final long MS = 1000000L;
+  private static final long BUDGET = 16 * MS;
+
+
+  private static class FakeFrameSource implements FrameSource {
+    FrameListener listener;
+    int posted;
+
+    @Override
+    public void postFrameCallback(FrameListener frameListener) {
+      listener = frameListener;
+      posted++;
+    }
+
+    void frame(long frameTimeNanos) {
+      FrameListener frameListener = listener;
+      listener = null;
+      assertTrue("no frame callback posted", frameListener != null);
+      frameListener.onFrame(frameTimeNanos);
+    }
+  }
+
+
+  private static class FakeClock implements TransitionJankMonitor.Clock {
+    long now;
+
+    @Override
+    public long nanoTime() {
+      return now;
+    }
+  }
+
+
+  private FakeFrameSource frameSource;
+  private FakeClock clock;
+  private TransitionJankMonitor monitor;
+
+
+  @Before
+  public void setUp() {
+    frameSource = new FakeFrameSource();
+    clock = new FakeClock();
+    monitor = new TransitionJankMonitor(frameSource, clock, BUDGET);
+  }
+
+
+  /**
+   * Delivers frames at the given offsets from the first one, in milliseconds.
+   */
+  private void frames(long firstFrameNanos, long... offsetsMs) {
+    for(long offsetMs : offsetsMs) {
+      frameSource.frame(firstFrameNanos + offsetMs * MS);
+    }
+  }
+
+
+  @Test
+  public void firstFrameIsTheBaseline() {
+    clock.now = 100 * MS;
+    monitor.startTransition("show");
+
+    // vsync of the first frame before the transition started, then one 40ms frame and three settle frames
+    frames(90 * MS, 0, 40, 56, 72, 88);
+
+    TransitionJankMonitor.Statistics statistics = monitor.getStatistics("show");
+    assertFalse(monitor.isTransitionInProgress());
+    assertEquals(1, statistics.getTransitions());
+    assertEquals(1, statistics.getFrames());
+    assertEquals(1, statistics.getFramesOverBudget());
+    assertEquals(40 * MS, statistics.getWorstFrameNanos());
+    assertEquals(40 * MS, statistics.getTotalTransitionNanos());
+  }
+
+
+  @Test
+  public void countsFramesOverOneAndAHalfBudgets() {
+    clock.now = 0L;
+    monitor.startTransition("show");
+
+    // 24ms is within one and a half budgets, 25ms and 33ms are not
+    frames(0L, 0, 25, 49, 82, 98, 114, 130);
+
+    TransitionJankMonitor.Statistics statistics = monitor.getStatistics("show");
+    assertEquals(3, statistics.getFrames());
+    assertEquals(2, statistics.getFramesOverBudget());
+    assertEquals(33 * MS, statistics.getWorstFrameNanos());
+    assertEquals(82 * MS, statistics.getTotalTransitionNanos());
+  }
+
+
+  @Test
+  public void settlesOnlyAfterConsecutiveFramesWithinBudget() {
+    clock.now = 0L;
+    monitor.startTransition("hide");
+
+    frames(0L, 0, 16, 32, 72);
+    assertTrue(monitor.isTransitionInProgress());
+
+    frames(0L, 88, 104);
+    assertTrue(monitor.isTransitionInProgress());
+
+    frames(0L, 120);
+    assertFalse(monitor.isTransitionInProgress());
+
+    TransitionJankMonitor.Statistics statistics = monitor.getStatistics("hide");
+    assertEquals(3, statistics.getFrames());
+    assertEquals(1, statistics.getFramesOverBudget());
+    assertEquals(72 * MS, statistics.getTotalTransitionNanos());
+    assertNull(frameSource.listener);
+  }
+
+
+  @Test
+  public void cutsOffAfterMaxDuration() {
+    clock.now = 0L;
+    monitor.startTransition("show");
+    frameSource.frame(0L);
+
+    long frameTimeNanos = 0L;
+    int frames = 0;
+
+    while(monitor.isTransitionInProgress()) {
+      frameTimeNanos += 40 * MS;
+      frameSource.frame(frameTimeNanos);
+      frames++;
+    }
+
+    TransitionJankMonitor.Statistics statistics = monitor.getStatistics("show");
+    assertEquals(TransitionJankMonitor.MAX_TRANSITION_NANOS, frameTimeNanos);
+    assertEquals(frames, statistics.getFrames());
+    assertEquals(frames, statistics.getFramesOverBudget());
+    assertEquals(TransitionJankMonitor.MAX_TRANSITION_NANOS, statistics.getTotalTransitionNanos());
+    assertNull(frameSource.listener);
+  }
+
+
+  @Test
+  public void restartFinishesThePreviousTransitionAndKeepsOneCallback() {
+    clock.now = 0L;
+    monitor.startTransition("show");
+    frames(0L, 0, 40);
+
+    int posted = frameSource.posted;
+    clock.now = 50 * MS;
+    monitor.startTransition("hide");
+    assertEquals(posted, frameSource.posted);
+
+    frames(0L, 56, 72, 88, 104);
+
+    assertEquals(1, monitor.getStatistics("show").getTransitions());
+    assertEquals(1, monitor.getStatistics("show").getFrames());
+    assertEquals(1, monitor.getStatistics("hide").getTransitions());
+    assertEquals(0, monitor.getStatistics("hide").getFramesOverBudget());
+    assertFalse(monitor.isTransitionInProgress());
+  }
+
+}